@@ -0,0 +1,74 @@
+package CS324_A2;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LCR elections with every node starting at once, without and with ELECTION
+ * coalescing (see NodeServiceImpl.forwardCandidate). windowMs = -1 is off,
+ * 0 only suppresses candidates smaller than one already sent, larger values
+ * also merge the candidates of a burst. The ELECTION messages of the last
+ * election are printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoalescingBenchmark {
+    @Param({"128", "512"})
+    public int nodes;
+
+    @Param({"RANDOM", "DESCENDING"})
+    public RingSimulator.Ordering ordering;
+
+    @Param({"-1", "0", "1"})
+    public long windowMs;
+
+    private RingSimulator simulator;
+    private RingSimulator.Report last;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() throws Exception {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        simulator = new RingSimulator(nodes, ordering, ForwardingMode.STREAM, TopologyPolicy.REGISTRATION_ORDER,
+                ElectionAlgorithm.LCR, ExecutionMode.VIRTUAL, 42, 60_000)
+                .coalescing(windowMs >= 0, Math.max(0, windowMs));
+        simulator.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        simulator.close();
+        System.setOut(console);
+        if (last != null) {
+            console.println("ELECTION messages: " + last.electionMessages() + " (coalesced " + last.coalesced() + ")");
+        }
+    }
+
+    @Benchmark
+    public long election() throws InterruptedException {
+        RingSimulator.Report report = simulator.runElection();
+        if (!report.completed()) {
+            throw new IllegalStateException("Election did not complete: " + report);
+        }
+        last = report;
+        return report.messagesSent();
+    }
+}
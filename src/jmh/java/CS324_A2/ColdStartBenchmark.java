@@ -0,0 +1,62 @@
+package CS324_A2;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cold start of an in-process ring (see RingSimulator): each invocation starts
+ * PeerRegister and N node servers, registers every node and waits until every
+ * node points at its successor and predecessor. Registration one node at a time
+ * (RegisterNode, as Node does) is compared with one RegisterNodes stream (as
+ * NodeLauncher does).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColdStartBenchmark {
+    @Param({"64", "256", "1024"})
+    public int nodes;
+
+    @Param({"SINGLE", "BULK"})
+    public RingSimulator.Registration registration;
+
+    private RingSimulator simulator;
+    private PrintStream console;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        simulator = new RingSimulator(nodes, RingSimulator.Ordering.RANDOM, ForwardingMode.STREAM, 42, 60_000)
+                .registration(registration);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        simulator.close();
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public RingSimulator coldStart() throws Exception {
+        simulator.start();
+        return simulator;
+    }
+}
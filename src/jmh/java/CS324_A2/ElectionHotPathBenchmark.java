@@ -0,0 +1,127 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageRequest;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one node's local election decisions, without any network.
+ *
+ * The node's successor is a RingLink that only counts messages, so each
+ * benchmark measures the decision plus building the forwarded message.
+ * Node console output is discarded during the run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ElectionHotPathBenchmark {
+    private static final int NODE_ID = 500;
+
+    private NodeServiceImpl node;
+    private CountingLink successor;
+    private PrintStream console;
+
+    private final MessageRequest larger = MessageRequest.newBuilder().setOrigin(900).setMessage(900).build();
+    private final MessageRequest smaller = MessageRequest.newBuilder().setOrigin(100).setMessage(100).build();
+    private final MessageRequest leader = MessageRequest.newBuilder().setOrigin(900).setMessage(900).build();
+
+    /**
+     * RingLink that only counts what it is asked to send.
+     */
+    static final class CountingLink implements RingLink {
+        private final int targetId;
+        long elections;
+        long leaders;
+
+        CountingLink(int targetId) {
+            this.targetId = targetId;
+        }
+
+        @Override
+        public int targetId() {
+            return targetId;
+        }
+
+        @Override
+        public void sendElection(MessageRequest request) {
+            elections++;
+        }
+
+        @Override
+        public void sendLeader(MessageRequest request) {
+            leaders++;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        node = new NodeServiceImpl(NODE_ID, ForwardingMode.ASYNC, NodeChannels.tcp());
+        successor = new CountingLink(NODE_ID + 1);
+        node.setNextLink(successor);
+        node.renewLeaderLease(900, 1, System.nanoTime() + TimeUnit.HOURS.toNanos(1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    /**
+     * ELECTION with a larger candidate: decide and forward.
+     */
+    @Benchmark
+    public long electionForward() {
+        node.handleElection(larger);
+        return successor.elections;
+    }
+
+    /**
+     * ELECTION with a smaller candidate: decide and drop.
+     */
+    @Benchmark
+    public long electionDrop() {
+        node.handleElection(smaller);
+        return successor.elections;
+    }
+
+    /**
+     * GetLeader answer from the node's cached leader (what a read-heavy client pays per lookup).
+     */
+    @Benchmark
+    public long leaderLookup() {
+        return node.leaderResponse().getLeaseMillis();
+    }
+
+    /**
+     * One election round as seen by a follower: start (sends own candidacy),
+     * then receive and pass on the LEADER announcement.
+     */
+    @Benchmark
+    public long leaderPropagation() {
+        long epoch = node.electionState().epoch() + 1;
+        node.startElection(epoch);
+        node.handleLeader(leader.toBuilder().setEpoch(epoch).build());
+        return successor.leaders;
+    }
+}
@@ -0,0 +1,67 @@
+package CS324_A2;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LCR elections on an in-process ring with a server per node, and with every
+ * node in one NodeHost behind a single server, where ring links hand messages
+ * to the neighbour directly (LocalRingLink) instead of going through gRPC.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HostedRingBenchmark {
+    @Param({"256", "1024"})
+    public int nodes;
+
+    @Param({"RANDOM", "DESCENDING"})
+    public RingSimulator.Ordering ordering;
+
+    @Param({"false", "true"})
+    public boolean hosted;
+
+    private RingSimulator simulator;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() throws Exception {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        simulator = new RingSimulator(nodes, ordering, ForwardingMode.STREAM, TopologyPolicy.REGISTRATION_ORDER,
+                ElectionAlgorithm.LCR, ExecutionMode.VIRTUAL, 42, 60_000)
+                .hosted(hosted);
+        simulator.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        simulator.close();
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public long election() throws InterruptedException {
+        RingSimulator.Report report = simulator.runElection();
+        if (!report.completed()) {
+            throw new IllegalStateException("Election did not complete: " + report);
+        }
+        return report.messagesSent();
+    }
+}
@@ -0,0 +1,45 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageRequest;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Protobuf cost of the MessageRequest that every ring hop carries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageRequestBenchmark {
+    private int candidate = 1;
+    private final MessageRequest request = MessageRequest.newBuilder().setOrigin(4711).setMessage(4711).build();
+    private final byte[] encoded = request.toByteArray();
+
+    @Benchmark
+    public MessageRequest build() {
+        candidate++;
+        return MessageRequest.newBuilder().setOrigin(candidate).setMessage(candidate).build();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return request.toByteArray();
+    }
+
+    @Benchmark
+    public MessageRequest parse() throws InvalidProtocolBufferException {
+        return MessageRequest.parseFrom(encoded);
+    }
+}
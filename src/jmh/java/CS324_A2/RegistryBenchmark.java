@@ -0,0 +1,162 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageResponse;
+import GeorgeFiji.NodeProto.RegisterRequest;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PeerRegister membership operations at growing ring sizes.
+ *
+ * Nodes are real NodeServiceImpl instances behind in-process servers, so every
+ * setNext the registry issues is a real gRPC call. PeerRegister itself is called
+ * directly, without a server in front of it.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RegistryBenchmark {
+    private static final AtomicInteger RUN_COUNTER = new AtomicInteger();
+
+    // Accepts the registry's acknowledgment and ignores it
+    private static final StreamObserver<MessageResponse> IGNORE = new StreamObserver<>() {
+        @Override
+        public void onNext(MessageResponse response) { }
+
+        @Override
+        public void onError(Throwable t) { }
+
+        @Override
+        public void onCompleted() { }
+    };
+
+    /**
+     * N started nodes plus an empty PeerRegister that can reach them.
+     */
+    public abstract static class Members {
+        @Param({"16", "64", "256"})
+        public int members;
+
+        PeerRegister registry;
+        private final List<Server> servers = new ArrayList<>();
+        private final List<NodeServiceImpl> nodes = new ArrayList<>();
+        private ExecutorService executor;
+        private PrintStream console;
+
+        void startNodes() throws IOException {
+            console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            String namespace = "bench-registry" + RUN_COUNTER.incrementAndGet();
+            NodeChannels channels = NodeChannels.inProcess(namespace);
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+            registry = new PeerRegister(channels);
+            for (int id = 1; id <= members; id++) {
+                NodeServiceImpl node = new NodeServiceImpl(id, ForwardingMode.ASYNC, channels);
+                nodes.add(node);
+                servers.add(InProcessServerBuilder.forName(NodeChannels.inProcessName(namespace, id))
+                        .executor(executor)
+                        .addService(node)
+                        .build()
+                        .start());
+            }
+        }
+
+        void registerAll() {
+            for (int id = 1; id <= members; id++) {
+                registry.registerNode(RegisterRequest.newBuilder().setNodeId(id).setPort(50000 + id).build(), IGNORE);
+            }
+        }
+
+        void stopNodes() {
+            nodes.forEach(NodeServiceImpl::shutdown);
+            servers.forEach(Server::shutdownNow);
+            registry.shutdown();
+            nodes.clear();
+            servers.clear();
+            executor.shutdownNow();
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * Fresh, empty registry for every invocation (measures a cold bootstrap).
+     */
+    @State(Scope.Thread)
+    public static class EmptyRing extends Members {
+        @Setup(Level.Invocation)
+        public void setUp() throws IOException {
+            startNodes();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            stopNodes();
+        }
+    }
+
+    /**
+     * Registry with every node already registered.
+     */
+    @State(Scope.Thread)
+    public static class FullRing extends Members {
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            startNodes();
+            registerAll();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            stopNodes();
+        }
+    }
+
+    /**
+     * All N nodes join one after another via registerNode.
+     */
+    @Benchmark
+    public PeerRegister registerNodes(EmptyRing ring) {
+        ring.registerAll();
+        return ring.registry;
+    }
+
+    /**
+     * Full rebuild of an existing N-node ring.
+     */
+    @Benchmark
+    public PeerRegister setupRingTopology(FullRing ring) {
+        RingGroup group = ring.registry.group(PeerRegister.DEFAULT_GROUP);
+        group.lock().lock();
+        try {
+            group.setupRingTopology();
+        } finally {
+            group.lock().unlock();
+        }
+        return ring.registry;
+    }
+}
@@ -0,0 +1,73 @@
+package CS324_A2;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end election on an in-process ring (see RingSimulator).
+ * The ring is built once per trial; each invocation is one complete election,
+ * measured until every node has learned the leader. LCR and Hirschberg-Sinclair
+ * run on the same rings, so their costs can be compared side by side, and so
+ * can virtual and platform threads (ExecutionMode).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RingElectionBenchmark {
+    @Param({"16", "128"})
+    public int nodes;
+
+    @Param({"ASCENDING", "RANDOM", "DESCENDING"})
+    public RingSimulator.Ordering ordering;
+
+    @Param({"STREAM", "ASYNC"})
+    public ForwardingMode forwarding;
+
+    @Param({"LCR", "HS"})
+    public ElectionAlgorithm algorithm;
+
+    @Param({"VIRTUAL", "PLATFORM"})
+    public ExecutionMode execution;
+
+    private RingSimulator simulator;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() throws Exception {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        simulator = new RingSimulator(nodes, ordering, forwarding, TopologyPolicy.REGISTRATION_ORDER, algorithm, execution, 42, 60_000);
+        simulator.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        simulator.close();
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public long election() throws InterruptedException {
+        RingSimulator.Report report = simulator.runElection();
+        if (!report.completed()) {
+            throw new IllegalStateException("Election did not complete: " + report);
+        }
+        return report.messagesSent();
+    }
+}
@@ -0,0 +1,143 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageRequest;
+import GeorgeFiji.NodeProto.MessageResponse;
+import GeorgeFiji.NodeServiceGrpc;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AsyncRingLink forwards messages without holding the caller's thread.
+ *
+ * Messages are placed on a bounded queue and sent with the async stub.
+ * Only one call is in flight at a time, so the successor receives messages
+ * in exactly the order they were queued. The next message is sent from the
+ * completion callback of the previous one.
+ *
+ * If the queue is full the message is rejected and reported on stderr,
+ * rather than blocking the handler thread that tried to forward it.
+ */
+public class AsyncRingLink implements RingLink {
+    // Default number of messages that may wait for the successor
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("lcr.forward.capacity", 1024);
+    // Upper bound for a single hop, so a hung successor cannot stall the queue forever
+    private static final long CALL_DEADLINE_MS = 5000;
+
+    private final int nodeId;                                // Owning node's ID (for log output)
+    private final int targetId;                              // Successor's node ID
+    private final ManagedChannel channel;                    // Channel to successor
+    private final NodeServiceGrpc.NodeServiceStub stub;      // Async stub for RPC calls
+    private final BlockingQueue<Outbound> pending;           // Messages waiting to be sent
+    private final AtomicBoolean sending = new AtomicBoolean(false);  // True while a call is in flight
+
+    /**
+     * A queued message together with the RPC it should be sent with.
+     */
+    private record Outbound(boolean leader, MessageRequest request) { }
+
+    public AsyncRingLink(int nodeId, int targetId, ManagedChannel channel) {
+        this(nodeId, targetId, channel, DEFAULT_CAPACITY);
+    }
+
+    public AsyncRingLink(int nodeId, int targetId, ManagedChannel channel, int capacity) {
+        this.nodeId = nodeId;
+        this.targetId = targetId;
+        this.channel = channel;
+        this.stub = NodeServiceGrpc.newStub(channel);
+        this.pending = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public int targetId() {
+        return targetId;
+    }
+
+    @Override
+    public void sendElection(MessageRequest request) {
+        enqueue(new Outbound(false, request));
+    }
+
+    @Override
+    public void sendLeader(MessageRequest request) {
+        enqueue(new Outbound(true, request));
+    }
+
+    /**
+     * Adds a message to the queue and starts sending if no call is in flight.
+     */
+    private void enqueue(Outbound message) {
+        if (!pending.offer(message)) {
+            System.err.println("Node " + nodeId + ": Outbound queue to node " + targetId
+                    + " is full - rejected " + (message.leader() ? "LEADER" : "ELECTION")
+                    + "(" + message.request().getMessage() + ")");
+            return;
+        }
+        drain();
+    }
+
+    /**
+     * Sends the next queued message, unless another call is already in flight.
+     */
+    private void drain() {
+        while (sending.compareAndSet(false, true)) {
+            Outbound next = pending.poll();
+            if (next != null) {
+                send(next);
+                return;
+            }
+            // Nothing to send: release the flag, then re-check in case a
+            // message was queued between poll() and set(false)
+            sending.set(false);
+            if (pending.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Issues the async call; the completion callback sends the next message.
+     */
+    private void send(Outbound message) {
+        StreamObserver<MessageResponse> done = new StreamObserver<>() {
+            @Override
+            public void onNext(MessageResponse response) {
+                // Acknowledgment only - nothing to do
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                System.err.println("Node " + nodeId + ": Failed to forward "
+                        + (message.leader() ? "LEADER" : "ELECTION") + " to node " + targetId + ": " + t.getMessage());
+                sending.set(false);
+                drain();
+            }
+
+            @Override
+            public void onCompleted() {
+                sending.set(false);
+                drain();
+            }
+        };
+
+        NodeServiceGrpc.NodeServiceStub call = stub.withDeadlineAfter(CALL_DEADLINE_MS, TimeUnit.MILLISECONDS);
+        // Detach from the caller's gRPC context: the handler that queued this message
+        // completes right away, and its context cancellation must not cancel the forward
+        Context.ROOT.run(() -> {
+            if (message.leader()) {
+                call.sendLeader(message.request(), done);
+            } else {
+                call.sendElection(message.request(), done);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        channel.shutdown();
+    }
+}
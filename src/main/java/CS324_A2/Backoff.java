@@ -0,0 +1,53 @@
+package CS324_A2;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Backoff computes retry delays: exponential growth with "full jitter".
+ *
+ * The n-th delay is drawn uniformly from [0, min(max, initial * 2^n)], so many
+ * nodes that start together (or lose PeerRegister together) spread their retries
+ * out instead of hitting the registry in lock-step. Not thread-safe; use one per
+ * retry loop.
+ */
+public class Backoff {
+    // First retry waits up to this long
+    public static final long INITIAL_MS = Long.getLong("lcr.register.backoffMs", 100);
+    // Upper bound for a single delay
+    public static final long MAX_MS = Long.getLong("lcr.register.maxBackoffMs", 5000);
+
+    private final long initialMillis;
+    private final long maxMillis;
+    private int attempts;              // Delays handed out since the last reset
+
+    public Backoff() {
+        this(INITIAL_MS, MAX_MS);
+    }
+
+    public Backoff(long initialMillis, long maxMillis) {
+        this.initialMillis = Math.max(1, initialMillis);
+        this.maxMillis = Math.max(this.initialMillis, maxMillis);
+    }
+
+    /**
+     * @return The delay before the next attempt, in milliseconds
+     */
+    public long nextDelayMillis() {
+        long ceiling = initialMillis << Math.min(attempts++, 30);
+        return ThreadLocalRandom.current().nextLong(Math.min(ceiling, maxMillis) + 1);
+    }
+
+    /**
+     * @return Delays handed out since the last reset
+     */
+    public int attempts() {
+        return attempts;
+    }
+
+    /**
+     * Starts over with short delays (after a success).
+     */
+    public void reset() {
+        attempts = 0;
+    }
+}
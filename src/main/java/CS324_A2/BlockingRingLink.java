@@ -0,0 +1,61 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageRequest;
+import GeorgeFiji.NodeServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.StatusRuntimeException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BlockingRingLink forwards messages with a blocking stub.
+ * This is the original forwarding behaviour: the caller waits until the
+ * successor (and everything it forwards to) has acknowledged the message.
+ *
+ * A failed call is reported on stderr and the message is given up, instead of
+ * the exception escaping into the handler that forwarded it. Calls carry a
+ * deadline, so a dead successor cannot hold the caller forever.
+ */
+public class BlockingRingLink implements RingLink {
+    // Upper bound for a call, including everything the successor forwards before acknowledging
+    private static final long CALL_DEADLINE_MS = 5000;
+
+    private final int nodeId;                                    // Owning node's ID (for log output)
+    private final int targetId;                                  // Successor's node ID
+    private final ManagedChannel channel;                        // Channel to successor
+    private final NodeServiceGrpc.NodeServiceBlockingStub stub;  // Stub for RPC calls
+
+    public BlockingRingLink(int nodeId, int targetId, ManagedChannel channel) {
+        this.nodeId = nodeId;
+        this.targetId = targetId;
+        this.channel = channel;
+        this.stub = NodeServiceGrpc.newBlockingStub(channel);
+    }
+
+    @Override
+    public int targetId() {
+        return targetId;
+    }
+
+    @Override
+    public void sendElection(MessageRequest request) {
+        try {
+            stub.withDeadlineAfter(CALL_DEADLINE_MS, TimeUnit.MILLISECONDS).sendElection(request);
+        } catch (StatusRuntimeException e) {
+            System.err.println("Node " + nodeId + ": Failed to forward ELECTION to node " + targetId + ": " + e.getStatus());
+        }
+    }
+
+    @Override
+    public void sendLeader(MessageRequest request) {
+        try {
+            stub.withDeadlineAfter(CALL_DEADLINE_MS, TimeUnit.MILLISECONDS).sendLeader(request);
+        } catch (StatusRuntimeException e) {
+            System.err.println("Node " + nodeId + ": Failed to forward LEADER to node " + targetId + ": " + e.getStatus());
+        }
+    }
+
+    @Override
+    public void close() {
+        channel.shutdown();
+    }
+}
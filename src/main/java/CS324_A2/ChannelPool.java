@@ -0,0 +1,109 @@
+package CS324_A2;
+
+import io.grpc.ManagedChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChannelPool keeps one reusable channel per node for PeerRegister.
+ *
+ * Opening a channel (and its TCP/HTTP2 handshake) per setNext or triggerElection
+ * call made ring setup and election broadcasts cost a connection per node per
+ * operation. The pool opens a channel the first time a node is contacted and
+ * hands out the same channel afterwards.
+ *
+ * Channels are closed when:
+ * - the node leaves the registry (evict), or
+ * - the channel has not been used for idleMillis (checked periodically).
+ */
+public class ChannelPool implements AutoCloseable {
+    // Default idle time after which an unused channel is closed
+    public static final long DEFAULT_IDLE_MS = Long.getLong("lcr.registry.channelIdleMs", 60_000);
+
+    private final NodeChannels channels;                       // Opens new channels
+    private final long idleMillis;                             // Idle time before a channel is closed
+    private final Map<Integer, Entry> pool = new ConcurrentHashMap<>();  // Node ID -> pooled channel
+    private final ScheduledExecutorService reaper;             // Runs the idle check
+
+    /**
+     * A pooled channel and the last time it was handed out.
+     */
+    private static final class Entry {
+        final ManagedChannel channel;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Entry(ManagedChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    public ChannelPool(NodeChannels channels) {
+        this(channels, DEFAULT_IDLE_MS);
+    }
+
+    public ChannelPool(NodeChannels channels, long idleMillis) {
+        this.channels = channels;
+        this.idleMillis = idleMillis;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "channel-pool-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, idleMillis / 2);
+        reaper.scheduleWithFixedDelay(this::closeIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the pooled channel to a node, opening it on first use.
+     * The caller must not shut the channel down.
+     */
+    public ManagedChannel get(int nodeId) {
+        // Refreshed inside compute(), so closeIdle() cannot close the entry between lookup and use
+        return pool.compute(nodeId, (id, entry) -> {
+            if (entry == null) entry = new Entry(channels.open(id));
+            entry.lastUsed = System.currentTimeMillis();
+            return entry;
+        }).channel;
+    }
+
+    /**
+     * Closes and forgets the channel to a node that left the ring.
+     */
+    public void evict(int nodeId) {
+        Entry entry = pool.remove(nodeId);
+        if (entry != null) entry.channel.shutdown();
+    }
+
+    /**
+     * Closes channels that have not been used for idleMillis. Each entry is checked
+     * and removed atomically with respect to get(), which either refreshes it first
+     * (and keeps it) or opens a new one afterwards.
+     */
+    private void closeIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        for (Integer nodeId : pool.keySet()) {
+            pool.computeIfPresent(nodeId, (id, entry) -> {
+                if (entry.lastUsed >= cutoff) return entry;
+                entry.channel.shutdown();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * @return Number of open pooled channels
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    @Override
+    public void close() {
+        reaper.shutdownNow();
+        pool.values().forEach(entry -> entry.channel.shutdown());
+        pool.clear();
+    }
+}
@@ -0,0 +1,38 @@
+package CS324_A2;
+
+/**
+ * ElectionAlgorithm selects the ElectionStrategy every node of a cluster runs.
+ *
+ * LCR: LeLann-Chang-Roberts. Candidacies travel clockwise only and are dropped
+ *      by the first larger node. O(n) messages on an ascending ring, O(n^2) on a
+ *      descending one.
+ * HS:  Hirschberg-Sinclair. Candidates probe both directions in phases of 2^k
+ *      hops and only continue while they are the largest ID in that
+ *      neighbourhood. O(n log n) messages on any ring, but needs predecessor
+ *      links and costs more than LCR on rings that are already sorted.
+ *
+ * All nodes of a ring must run the same algorithm.
+ * Selected with the system property "lcr.algorithm" (lcr | hs), default lcr.
+ */
+public enum ElectionAlgorithm {
+    LCR,
+    HS;
+
+    /**
+     * Creates the strategy instance for one node.
+     */
+    public ElectionStrategy create(NodeServiceImpl node) {
+        return switch (this) {
+            case LCR -> new LcrStrategy(node);
+            case HS -> new HirschbergSinclairStrategy(node);
+        };
+    }
+
+    /**
+     * Reads the election algorithm from the "lcr.algorithm" system property.
+     */
+    public static ElectionAlgorithm fromSystemProperty() {
+        String value = System.getProperty("lcr.algorithm", "lcr");
+        return ElectionAlgorithm.valueOf(value.trim().toUpperCase());
+    }
+}
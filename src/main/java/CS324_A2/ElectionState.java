@@ -0,0 +1,55 @@
+package CS324_A2;
+
+/**
+ * ElectionState is one node's view of the election it is currently taking part in.
+ *
+ * Instances are immutable. NodeServiceImpl keeps the current state in an
+ * AtomicReference and moves between states with compare-and-set, so handler
+ * threads, stream receivers and election starts never need a lock.
+ *
+ * @param epoch           Election this state belongs to; a larger epoch supersedes a smaller one
+ * @param candidacySent   True once this node has sent ELECTION(ownId) in this epoch
+ * @param isLeader        True if this node won this epoch's election
+ * @param leaderAnnounced True once the LEADER announcement of this epoch has been handled
+ * @param leaderRelayed   True once this node has passed the LEADER announcement on around the ring
+ *                        (a ring pass stops at the first node that already relayed one)
+ * @param leaderId        Winner of this epoch (0 until known)
+ * @param maxForwarded    Largest candidate this node has sent clockwise in this epoch, own candidacy
+ *                        included (only tracked when ELECTION coalescing is on; 0 = none)
+ * @param startedAtNanos  System.nanoTime() when this node entered the epoch (for election latency)
+ */
+public record ElectionState(long epoch, boolean candidacySent, boolean isLeader, boolean leaderAnnounced,
+                            boolean leaderRelayed, int leaderId, int maxForwarded, long startedAtNanos) {
+
+    /**
+     * State of a node that has not seen any election yet.
+     */
+    public static final ElectionState INITIAL = new ElectionState(0, false, false, false, false, 0, 0, 0);
+
+    /**
+     * @return Fresh state for a newer epoch, entered now
+     */
+    public static ElectionState begin(long epoch) {
+        return new ElectionState(epoch, false, false, false, false, 0, 0, System.nanoTime());
+    }
+
+    public ElectionState withCandidacy() {
+        return new ElectionState(epoch, true, isLeader, leaderAnnounced, leaderRelayed, leaderId, maxForwarded, startedAtNanos);
+    }
+
+    public ElectionState asLeader(int nodeId) {
+        return new ElectionState(epoch, candidacySent, true, leaderAnnounced, leaderRelayed, nodeId, maxForwarded, startedAtNanos);
+    }
+
+    public ElectionState withLeader(int winnerId) {
+        return new ElectionState(epoch, candidacySent, isLeader, true, leaderRelayed, winnerId, maxForwarded, startedAtNanos);
+    }
+
+    public ElectionState withLeaderRelayed() {
+        return new ElectionState(epoch, candidacySent, isLeader, leaderAnnounced, true, leaderId, maxForwarded, startedAtNanos);
+    }
+
+    public ElectionState withMaxForwarded(int candidateId) {
+        return new ElectionState(epoch, candidacySent, isLeader, leaderAnnounced, leaderRelayed, leaderId, candidateId, startedAtNanos);
+    }
+}
@@ -0,0 +1,34 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageRequest;
+
+/**
+ * ElectionStrategy is the algorithm a node uses to find the leader.
+ *
+ * NodeServiceImpl owns everything that is the same for every algorithm: epochs
+ * (stale messages never reach a strategy), sending a candidacy at most once per
+ * epoch, the links to the ring neighbours, and the LEADER announcement that
+ * circulates once the winner is known. A strategy only decides what to do with
+ * ELECTION messages and calls NodeServiceImpl.declareLeader when its node wins.
+ *
+ * Each node has its own strategy instance (see ElectionAlgorithm.create).
+ */
+public interface ElectionStrategy {
+
+    /**
+     * Sends this node's candidacy for the given epoch.
+     * Called at most once per epoch, when the node starts or joins an election.
+     */
+    void start(long epoch);
+
+    /**
+     * Handles an ELECTION message of the node's current epoch.
+     */
+    void onElection(MessageRequest request);
+
+    /**
+     * @return True if the algorithm also sends messages to the predecessor
+     *         (the node then opens a link in setPrev)
+     */
+    boolean bidirectional();
+}
@@ -0,0 +1,301 @@
+package CS324_A2;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.ServerBuilder;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.unix.DomainSocketAddress;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Filter;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Endpoint is an address a node (or PeerRegister) can be reached at, over one transport.
+ *
+ * Written as a URI, which is also how nodes advertise their endpoints in
+ * RegisterRequest.endpoints and how the lcr.registry.endpoint property is given:
+ *   inprocess://name              - gRPC in-process transport, same JVM only (no sockets, no copies)
+ *   unix:///tmp/lcr/node-3.sock   - Unix domain socket through Netty's native epoll transport (Linux)
+ *   tcp://127.0.0.1:50003         - plaintext TCP
+ *
+ * Transports are listed cheapest first. A node may listen on several endpoints
+ * at once; whoever links to it takes the cheapest one it can use (see cheapest()
+ * and EndpointDirectory): in-process if the server lives in this JVM, a Unix
+ * socket if the socket file is on this host and epoll is available, else TCP.
+ *
+ * Which transports a node listens on is chosen with lcr.transport, a comma
+ * separated list (default tcp), e.g. -Dlcr.transport=unix,tcp.
+ */
+public record Endpoint(Transport transport, String address) {
+    // Transports a node listens on
+    public static final String TRANSPORTS = System.getProperty("lcr.transport", "tcp");
+    // Directory for the nodes' Unix domain sockets
+    public static final Path SOCKET_DIR = Path.of(System.getProperty("lcr.transport.socketDir",
+            Path.of(System.getProperty("java.io.tmpdir"), "lcr-sockets").toString()));
+    // Where PeerRegister listens and nodes register
+    public static final String REGISTRY = System.getProperty("lcr.registry.endpoint", "tcp://127.0.0.1:50099");
+
+    // In-process servers started in this JVM through serverBuilder(); only these are reachable in-process
+    private static final Set<String> LOCAL_SERVERS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Transports, cheapest first.
+     */
+    public enum Transport {
+        INPROCESS("inprocess"),
+        UNIX("unix"),
+        TCP("tcp");
+
+        private final String scheme;
+
+        Transport(String scheme) {
+            this.scheme = scheme;
+        }
+
+        public String scheme() {
+            return scheme;
+        }
+    }
+
+    /**
+     * One epoll event loop group for every Unix socket server and channel in this JVM.
+     */
+    private static final class Epolls {
+        // gRPC sets SO_KEEPALIVE on every Netty channel; domain sockets have no such option,
+        // and Netty would warn about it for each connection. Only that warning is dropped,
+        // from the loggers of the client and server bootstraps (kept here so the filters stick).
+        static final List<Logger> BOOTSTRAP_LOGS = List.of(
+                Logger.getLogger("io.grpc.netty.shaded.io.netty.bootstrap.Bootstrap"),
+                Logger.getLogger("io.grpc.netty.shaded.io.netty.bootstrap.ServerBootstrap"));
+        static {
+            for (Logger log : BOOTSTRAP_LOGS) {
+                Filter previous = log.getFilter();
+                log.setFilter(record -> !isDomainKeepAliveWarning(record)
+                        && (previous == null || previous.isLoggable(record)));
+            }
+        }
+
+        /**
+         * @return True for Netty's "Unknown channel option 'SO_KEEPALIVE'" warning, which only
+         *         channels without the option raise (TCP channels support it)
+         */
+        static boolean isDomainKeepAliveWarning(LogRecord record) {
+            String message = record.getMessage();
+            return message != null && message.startsWith("Unknown channel option 'SO_KEEPALIVE'");
+        }
+
+        static final EventLoopGroup GROUP = new EpollEventLoopGroup(0, r -> {
+            Thread t = new Thread(r, "lcr-epoll");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static Endpoint tcp(String host, int port) {
+        return new Endpoint(Transport.TCP, host + ":" + port);
+    }
+
+    public static Endpoint unix(Path socket) {
+        return new Endpoint(Transport.UNIX, socket.toAbsolutePath().toString());
+    }
+
+    public static Endpoint inProcess(String name) {
+        return new Endpoint(Transport.INPROCESS, name);
+    }
+
+    /**
+     * @return The standard TCP endpoint of a node: 127.0.0.1, port 50000 + nodeId
+     */
+    public static Endpoint tcp(int nodeId) {
+        return tcp("127.0.0.1", 50000 + nodeId);
+    }
+
+    /**
+     * @return The node's endpoints for the transports listed in lcr.transport, in that order
+     */
+    public static List<Endpoint> forNode(int nodeId) {
+        return forTransports("node-" + nodeId, 50000 + nodeId);
+    }
+
+    /**
+     * @return The endpoints of a NodeHost serving on the TCP port, for the transports listed in lcr.transport
+     */
+    public static List<Endpoint> forHost(int port) {
+        return forTransports("host-" + port, port);
+    }
+
+    private static List<Endpoint> forTransports(String name, int port) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String transport : TRANSPORTS.split(",")) {
+            if (transport.isBlank()) continue;
+            endpoints.add(switch (Transport.valueOf(transport.trim().toUpperCase())) {
+                case INPROCESS -> inProcess("lcr-" + name);
+                case UNIX -> unix(SOCKET_DIR.resolve(name + ".sock"));
+                case TCP -> tcp("127.0.0.1", port);
+            });
+        }
+        if (endpoints.isEmpty()) throw new IllegalArgumentException("lcr.transport lists no transport");
+        return endpoints;
+    }
+
+    /**
+     * @return PeerRegister's endpoint (lcr.registry.endpoint)
+     */
+    public static Endpoint registry() {
+        return parse(REGISTRY);
+    }
+
+    /**
+     * Parses "tcp://host:port", "unix:///path" (or "unix:/path") or "inprocess://name".
+     *
+     * @throws IllegalArgumentException If the text is not an endpoint
+     */
+    public static Endpoint parse(String text) {
+        int colon = text.indexOf(':');
+        if (colon < 0) throw new IllegalArgumentException("Not an endpoint (missing scheme): " + text);
+        String scheme = text.substring(0, colon);
+        String rest = text.substring(colon + 1);
+        for (Transport transport : Transport.values()) {
+            if (!transport.scheme().equals(scheme)) continue;
+            if (transport == Transport.UNIX) {
+                // unix:///path and unix:/path both name /path
+                return new Endpoint(transport, rest.startsWith("//") ? rest.substring(2) : rest);
+            }
+            if (!rest.startsWith("//") || rest.length() == 2) throw new IllegalArgumentException("Not an endpoint: " + text);
+            return new Endpoint(transport, rest.substring(2));
+        }
+        throw new IllegalArgumentException("Unknown transport '" + scheme + "' in endpoint " + text);
+    }
+
+    /**
+     * @return The endpoints in the text list (unparseable entries are skipped)
+     */
+    public static List<Endpoint> parseAll(Collection<String> texts) {
+        List<Endpoint> endpoints = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            try {
+                endpoints.add(parse(text));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Ignoring endpoint: " + e.getMessage());
+            }
+        }
+        return endpoints;
+    }
+
+    /**
+     * @return The cheapest of the endpoints this process can use, or null if none
+     */
+    public static Endpoint cheapest(Collection<Endpoint> endpoints) {
+        Endpoint best = null;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.reachable() && (best == null || endpoint.transport().compareTo(best.transport()) < 0)) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return True if this process can connect to the endpoint: an in-process server
+     *         of this JVM, a Unix socket on this host (with epoll), or any TCP address
+     */
+    public boolean reachable() {
+        return switch (transport) {
+            case INPROCESS -> LOCAL_SERVERS.contains(address);
+            case UNIX -> Epoll.isAvailable() && Files.exists(Path.of(address));
+            case TCP -> true;
+        };
+    }
+
+    /**
+     * Opens a plaintext channel to the endpoint. The caller owns the channel.
+     *
+     * @param executor Runs the channel's call callbacks
+     */
+    public ManagedChannel open(Executor executor) {
+        return switch (transport) {
+            case INPROCESS -> InProcessChannelBuilder.forName(address)
+                    .executor(executor)
+                    .build();
+            case UNIX -> NettyChannelBuilder.forAddress(new DomainSocketAddress(address))
+                    .channelType(EpollDomainSocketChannel.class)
+                    .eventLoopGroup(Epolls.GROUP)
+                    .usePlaintext()
+                    .executor(executor)
+                    .build();
+            case TCP -> {
+                int colon = address.lastIndexOf(':');
+                yield ManagedChannelBuilder.forAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)))
+                        .usePlaintext()  // No TLS for local testing
+                        .executor(executor)
+                        .build();
+            }
+        };
+    }
+
+    /**
+     * @return A server builder listening on this endpoint. A Unix socket's directory is
+     *         created and a stale socket file left by a previous process is removed.
+     */
+    public ServerBuilder<?> serverBuilder() {
+        return switch (transport) {
+            case INPROCESS -> {
+                LOCAL_SERVERS.add(address);
+                yield InProcessServerBuilder.forName(address);
+            }
+            case UNIX -> {
+                if (!Epoll.isAvailable()) {
+                    throw new IllegalStateException("Unix domain sockets need Netty's epoll transport (Linux): "
+                            + Epoll.unavailabilityCause());
+                }
+                try {
+                    Path socket = Path.of(address);
+                    if (socket.getParent() != null) Files.createDirectories(socket.getParent());
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot prepare socket " + address, e);
+                }
+                yield NettyServerBuilder.forAddress(new DomainSocketAddress(address))
+                        .channelType(EpollServerDomainSocketChannel.class)
+                        .bossEventLoopGroup(Epolls.GROUP)
+                        .workerEventLoopGroup(Epolls.GROUP);
+            }
+            case TCP -> ServerBuilder.forPort(Integer.parseInt(address.substring(address.lastIndexOf(':') + 1)));
+        };
+    }
+
+    /**
+     * @return The endpoint for log lines: "port 50003" for the local TCP ports, else the URI
+     */
+    public String describe() {
+        return transport == Transport.TCP && address.startsWith("127.0.0.1:")
+                ? "port " + address.substring(address.lastIndexOf(':') + 1)
+                : toString();
+    }
+
+    /**
+     * @return The endpoint as a URI, e.g. "unix:///tmp/lcr-sockets/node-3.sock"
+     */
+    @Override
+    public String toString() {
+        return transport.scheme() + "://" + address;
+    }
+}
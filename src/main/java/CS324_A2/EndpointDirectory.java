@@ -0,0 +1,79 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.NodeEndpoints;
+import io.grpc.ManagedChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * EndpointDirectory opens channels to nodes at the endpoints they advertised.
+ *
+ * Nodes advertise their endpoints when they register; PeerRegister keeps them
+ * here and passes them on with setNext, setPrev and setFingers, so a node learns
+ * where its neighbours listen. open(nodeId) connects over the cheapest advertised
+ * endpoint this process can use (see Endpoint.cheapest). A node that advertised
+ * nothing, or none of whose endpoints is usable, is reached through the fallback
+ * channels (TCP to port 50000 + nodeId, or RingSimulator's in-process names).
+ *
+ * Every call on a channel opened here names its target node in the lcr-target
+ * header, so a NodeHost serving many nodes on one endpoint can route it.
+ */
+public class EndpointDirectory implements NodeChannels {
+    private final NodeChannels fallback;                                         // For nodes without usable endpoints
+    private final Executor executor;                                             // Call callbacks of channels opened here
+    private final Map<Integer, List<Endpoint>> endpoints = new ConcurrentHashMap<>();  // Node ID -> advertised endpoints
+
+    public EndpointDirectory(NodeChannels fallback, Executor executor) {
+        this.fallback = fallback;
+        this.executor = executor;
+    }
+
+    @Override
+    public ManagedChannel open(int nodeId) {
+        Endpoint best = Endpoint.cheapest(endpoints.getOrDefault(nodeId, List.of()));
+        ManagedChannel channel = best != null ? best.open(executor) : fallback.open(nodeId);
+        return new InterceptedChannel(channel, NodeHost.target(nodeId));
+    }
+
+    /**
+     * Records the endpoints a node advertised, replacing what was known.
+     *
+     * @return True if they differ from what was known (channels opened before may use another transport)
+     */
+    @Override
+    public boolean learn(int nodeId, List<Endpoint> advertised) {
+        if (advertised.isEmpty()) return endpoints.remove(nodeId) != null;
+        return !advertised.equals(endpoints.put(nodeId, List.copyOf(advertised)));
+    }
+
+    @Override
+    public List<Endpoint> endpoints(int nodeId) {
+        return endpoints.getOrDefault(nodeId, List.of());
+    }
+
+    /**
+     * Forgets a node's endpoints (it left every ring).
+     */
+    public void forget(int nodeId) {
+        endpoints.remove(nodeId);
+    }
+
+    /**
+     * @return The node's endpoints as sent in MessageRequest.peers, or null if it advertised none
+     */
+    public NodeEndpoints peer(int nodeId) {
+        List<Endpoint> known = endpoints(nodeId);
+        return known.isEmpty() ? null : toProto(nodeId, known);
+    }
+
+    /**
+     * @return The endpoints of one node as sent in MessageRequest.peers
+     */
+    public static NodeEndpoints toProto(int nodeId, List<Endpoint> endpoints) {
+        NodeEndpoints.Builder peer = NodeEndpoints.newBuilder().setNodeId(nodeId);
+        for (Endpoint endpoint : endpoints) peer.addEndpoints(endpoint.toString());
+        return peer.build();
+    }
+}
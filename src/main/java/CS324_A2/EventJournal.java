@@ -0,0 +1,354 @@
+package CS324_A2;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * EventJournal records election events as fixed-size binary records.
+ *
+ * Printing every hop with System.out allocated strings on every message and
+ * serialized all handler threads on the stdout lock. Instead, each decision a
+ * node makes (sent, forwarded, dropped, stale, elected, ...) is written as one
+ * record into a lock-free ring buffer of longs. A background thread drains the
+ * buffer into a memory-mapped file; JournalDecoder rebuilds the per-election
+ * message trace from the files of all nodes.
+ *
+ * record() claims a slot with one CAS, fills six longs and publishes the slot
+ * with a release store - no locks and no allocation. When the buffer is full
+ * (the drainer has fallen behind by CAPACITY records) the event is counted in
+ * dropped() instead of blocking the hot path.
+ *
+ * One journal is shared by every node in a JVM (see shared()), so a simulated
+ * ring writes one file. File layout, all values big-endian:
+ * - Header (40 bytes): magic "LCRJ", version, process ID, wall-clock time in
+ *   nanoseconds and System.nanoTime() at the same instant (to line up files of
+ *   different processes), 8 reserved bytes
+ * - Records (48 bytes each): epoch (long), nanoTime (long), node, origin,
+ *   candidate, hop (ints), type, decision, direction, reserved (bytes), phase,
+ *   group, reserved (ints)
+ * The group is the hash of the election group's name (groupId()), the same in
+ * every process, so rings that share one journal (NodeHost, RingSimulator
+ * --rings) and reuse node IDs and epochs are still told apart. The first time a
+ * group is used (group()), a name record is written: the first 32 bytes of the
+ * name in UTF-8 (zero-padded), type NAME_TYPE and the group in the usual places.
+ * The file grows in mapped segments and is never shrunk (a mapped file cannot be
+ * truncated on Windows), so the first record with type 0 marks the end.
+ *
+ * Human-readable per-message console output is opt-in: -Dlcr.console=true.
+ */
+public class EventJournal implements AutoCloseable {
+    public static final int MAGIC = 0x4C43524A;                 // "LCRJ"
+    public static final int VERSION = 2;
+    public static final int HEADER_BYTES = 40;
+    public static final int RECORD_BYTES = 48;
+    private static final int RECORD_LONGS = RECORD_BYTES / Long.BYTES;
+    private static final long SEGMENT_BYTES = RECORD_BYTES * 100_000L;  // File is mapped in 4.8 MB steps
+    public static final int NAME_TYPE = 0x7F;                    // Type byte of a record naming a group
+    public static final int NAME_BYTES = 32;                     // Longest group name kept in a name record
+    private static final long CLOSED = Long.MIN_VALUE;           // Set in tail once no more slots may be claimed
+
+    // Directory for journal files, or "off" (default). Opt-in: every JVM that records (nodes,
+    // registries, simulators, benchmark forks) would otherwise leave a file behind for good
+    public static final String LOCATION = System.getProperty("lcr.journal", "off");
+    // Records buffered between hot path and drainer (rounded up to a power of two)
+    public static final int CAPACITY = Integer.highestOneBit(Math.max(2, Integer.getInteger("lcr.journal.capacity", 65_536) * 2 - 1));
+    // How long the drainer sleeps when the buffer is empty: doubling from the first to the
+    // second value while it stays empty, so an idle journal wakes up about 20 times a second
+    private static final long IDLE_MIN_NANOS = 1_000_000;
+    private static final long IDLE_MAX_NANOS = 50_000_000;
+
+    private static volatile boolean console = Boolean.getBoolean("lcr.console");  // Print per-message lines too
+
+    /**
+     * What a record is about.
+     */
+    public enum Type { ELECTION, PROBE, REPLY, LEADER, TRIGGER }
+
+    /**
+     * What the recording node did with it.
+     */
+    public enum Decision { SENT, FORWARDED, DROPPED, STALE, REPLIED, ACCEPTED, ELECTED, LEARNED, COALESCED }
+
+    private final Path file;                                   // Journal file (null if disabled)
+    private final long[] slots;                                // RECORD_LONGS longs per record
+    private final AtomicLongArray published;                   // Sequence number published in each slot
+    private final int mask;                                    // CAPACITY - 1
+    private final AtomicLong tail = new AtomicLong();          // Next sequence number to claim (| CLOSED once closed)
+    private volatile long head;                                // Next sequence number to drain
+    private final LongAdder dropped = new LongAdder();         // Events lost because the buffer was full
+    private final Set<Integer> named = ConcurrentHashMap.newKeySet();  // Groups whose name record was written
+    private volatile long written;                             // Records written to the file
+    private volatile boolean running = true;                   // Cleared by close()
+    private volatile long end = Long.MAX_VALUE;                // Sequence numbers claimed before close()
+    private final Thread drainer;                              // Copies records into the mapped file
+
+    private FileChannel channel;                               // Drainer only
+    private MappedByteBuffer segment;                          // Drainer only: mapped part being written
+    private long segmentStart;                                 // Drainer only: file offset of segment
+
+    /**
+     * Holder for the JVM-wide journal, created on first use.
+     */
+    private static final class Shared {
+        static final EventJournal INSTANCE = create();
+
+        private static EventJournal create() {
+            if (LOCATION.equalsIgnoreCase("off")) return new EventJournal(null, CAPACITY);
+            long pid = ProcessHandle.current().pid();
+            EventJournal journal = new EventJournal(Path.of(LOCATION, "lcr-journal-" + pid + ".bin"), CAPACITY);
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "event-journal-close"));
+            return journal;
+        }
+    }
+
+    /**
+     * @return The journal shared by every node in this JVM
+     */
+    public static EventJournal shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * @return True if per-message lines are printed to System.out as well
+     */
+    public static boolean console() {
+        return console;
+    }
+
+    /**
+     * Turns per-message console output on or off (RingSimulator --verbose).
+     */
+    public static void setConsole(boolean enabled) {
+        console = enabled;
+    }
+
+    /**
+     * Creates a journal writing to the given file (null = record nothing).
+     *
+     * @param capacity Buffered records, a power of two
+     */
+    public EventJournal(Path file, int capacity) {
+        this.slots = new long[file == null ? 0 : capacity * RECORD_LONGS];
+        this.published = new AtomicLongArray(file == null ? 0 : capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < published.length(); i++) published.set(i, -1);
+
+        Path opened = null;
+        if (file != null) {
+            try {
+                openFile(file);
+                opened = file;
+            } catch (IOException e) {
+                System.err.println("Event journal disabled - cannot open " + file + ": " + e.getMessage());
+            }
+        }
+        this.file = opened;
+        if (opened == null) {
+            tail.set(CLOSED);
+            running = false;
+            drainer = null;
+            return;
+        }
+        drainer = new Thread(this::drainLoop, "event-journal-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * @return The journal file, or null if the journal is disabled
+     */
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * @return Records written to the file so far
+     */
+    public long written() {
+        return written;
+    }
+
+    /**
+     * @return Events lost because the buffer was full
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return The group field of records for the named election group ("" = default group gives 0)
+     */
+    public static int groupId(String group) {
+        return group.hashCode();
+    }
+
+    /**
+     * group: Returns the group field for the named group and, the first time it is
+     * used, records its name so JournalDecoder can print it. Call it once per member,
+     * not per message.
+     */
+    public int group(String name) {
+        int id = groupId(name);
+        if (named.add(id)) {
+            byte[] bytes = Arrays.copyOf(name.getBytes(StandardCharsets.UTF_8), NAME_BYTES);
+            ByteBuffer packed = ByteBuffer.wrap(bytes);
+            publish(packed.getLong(), packed.getLong(), packed.getLong(), packed.getLong(),
+                    (long) NAME_TYPE << 56, (long) id << 32);
+        }
+        return id;
+    }
+
+    /**
+     * record: Appends one event. Never blocks: if the buffer is full the event is dropped and counted.
+     *
+     * @param group     Election group, see groupId()
+     * @param epoch     Election epoch
+     * @param type      What the message was
+     * @param decision  What this node did with it
+     * @param node      Node recording the event
+     * @param origin    Node that sent the message into the ring
+     * @param candidate Candidate (or winner) ID carried by the message
+     * @param phase     Hirschberg-Sinclair phase (0 for LCR)
+     * @param hop       Hops travelled in the phase (0 for LCR)
+     * @param direction Direction number (0 = clockwise)
+     */
+    public void record(int group, long epoch, Type type, Decision decision, int node, int origin, int candidate,
+                       int phase, int hop, int direction) {
+        publish(epoch, System.nanoTime(),
+                (long) node << 32 | (origin & 0xFFFFFFFFL),
+                (long) candidate << 32 | (hop & 0xFFFFFFFFL),
+                (long) (type.ordinal() + 1) << 56 | (long) (decision.ordinal() + 1) << 48
+                        | (long) (direction & 0xFF) << 40 | (phase & 0xFFFFFFFFL),
+                (long) group << 32);
+    }
+
+    /**
+     * publish: Claims a slot, fills it with one record and hands it to the drainer.
+     */
+    private void publish(long l0, long l1, long l2, long l3, long l4, long l5) {
+        // Claim a slot, unless the journal is closed or the drainer is a whole buffer behind.
+        // Closing sets CLOSED in tail, so every claim either happens before it (and is drained) or fails.
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq < 0) return;  // CLOSED
+            if (seq - head >= published.length()) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+
+        int slot = (int) (seq & mask);
+        int base = slot * RECORD_LONGS;
+        slots[base] = l0;
+        slots[base + 1] = l1;
+        slots[base + 2] = l2;
+        slots[base + 3] = l3;
+        slots[base + 4] = l4;
+        slots[base + 5] = l5;
+        published.setRelease(slot, seq);  // Makes the slot visible to the drainer
+    }
+
+    /**
+     * Creates the file and writes the header.
+     */
+    private void openFile(Path path) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        channel = new RandomAccessFile(path.toFile(), "rw").getChannel();
+        channel.truncate(0);
+        mapSegment(0);
+        segment.putInt(MAGIC);
+        segment.putInt(VERSION);
+        segment.putLong(ProcessHandle.current().pid());
+        segment.putLong(System.currentTimeMillis() * 1_000_000);
+        segment.putLong(System.nanoTime());
+        segment.putLong(0);  // Reserved
+    }
+
+    private void mapSegment(long start) throws IOException {
+        segmentStart = start;
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, start, SEGMENT_BYTES);
+    }
+
+    /**
+     * drainLoop: Copies published records into the file until closed and empty.
+     * Backs off while the buffer stays empty; close() unparks it.
+     */
+    private void drainLoop() {
+        try {
+            long idle = IDLE_MIN_NANOS;
+            while (true) {
+                int drained = drain();
+                if (drained > 0) {
+                    idle = IDLE_MIN_NANOS;
+                } else {
+                    if (!running && head >= end) break;  // Everything claimed before close() is written
+                    LockSupport.parkNanos(running ? idle : IDLE_MIN_NANOS);
+                    idle = Math.min(idle * 2, IDLE_MAX_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            tail.getAndUpdate(t -> t | CLOSED);
+            running = false;
+            System.err.println("Event journal stopped - write to " + file + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * drain: Writes the records published in order since the last call.
+     *
+     * @return Number of records written
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        long seq = head;
+        while (true) {
+            int slot = (int) (seq & mask);
+            if (published.getAcquire(slot) != seq) break;  // Not claimed, or claimed but not yet filled
+            if (segment.remaining() < RECORD_BYTES) mapSegment(segmentStart + segment.position());
+            int base = slot * RECORD_LONGS;
+            for (int i = 0; i < RECORD_LONGS; i++) segment.putLong(slots[base + i]);
+            seq++;
+            count++;
+            head = seq;  // Frees the slot for producers
+        }
+        if (count > 0) written += count;
+        return count;
+    }
+
+    /**
+     * close: Stops recording and writes every record claimed so far, including
+     * those still being filled by producers that raced with close().
+     */
+    @Override
+    public void close() {
+        if (drainer == null) return;
+        long claimed = tail.getAndUpdate(t -> t | CLOSED);
+        if (claimed < 0) return;  // Already closed, or stopped by a write error
+        end = claimed;
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(5_000);
+            segment.force();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Event journal: could not finish " + file + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package CS324_A2;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExecutionMode selects the threads that run RPC handlers, election starts and
+ * the callbacks of outbound forwarding calls.
+ *
+ * VIRTUAL:  One Java 21 virtual thread per task. A handler that waits on a
+ *           downstream call (BLOCKING forwarding, PeerRegister linking a node)
+ *           unmounts from its carrier instead of holding an OS thread, so a
+ *           message travelling k hops costs k virtual threads, not k platform threads.
+ * PLATFORM: A cached pool of platform threads, like gRPC's default executor.
+ *           Kept to measure against (RingSimulator --execution platform).
+ *
+ * Delays (the trigger stagger) never sleep on a task thread: they are scheduled
+ * on one shared timer thread, which hands the task to the mode's executor when it is due.
+ *
+ * Selected with the system property "lcr.executor" (virtual | platform), default virtual.
+ */
+public enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL;
+
+    /**
+     * Holder for the process-wide executors and timer, created on first use.
+     */
+    private static final class Shared {
+        static final ExecutorService PLATFORM_EXECUTOR = Executors.newCachedThreadPool(
+                Thread.ofPlatform().name("lcr-platform-", 0).daemon().factory());
+        static final ExecutorService VIRTUAL_EXECUTOR = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("lcr-virtual-", 0).factory());
+        static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("lcr-timer").daemon().factory());
+    }
+
+    /**
+     * Reads the execution mode from the "lcr.executor" system property.
+     */
+    public static ExecutionMode fromSystemProperty() {
+        String value = System.getProperty("lcr.executor", "virtual");
+        return ExecutionMode.valueOf(value.trim().toUpperCase());
+    }
+
+    /**
+     * @return The executor shared by every server, channel and node in this JVM that uses this mode
+     */
+    public Executor executor() {
+        return this == VIRTUAL ? Shared.VIRTUAL_EXECUTOR : Shared.PLATFORM_EXECUTOR;
+    }
+
+    /**
+     * Creates an executor of this mode that the caller owns and shuts down
+     * (e.g. one per simulated ring).
+     *
+     * @param name Thread name prefix
+     */
+    public ExecutorService newExecutor(String name) {
+        return this == VIRTUAL
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory())
+                : Executors.newCachedThreadPool(Thread.ofPlatform().name(name + "-", 0).daemon().factory());
+    }
+
+    /**
+     * schedule: Runs a task on this mode's executor after a delay, without a thread sleeping through it.
+     */
+    public void schedule(Runnable task, long delayMillis) {
+        if (delayMillis <= 0) {
+            executor().execute(task);
+        } else {
+            Shared.TIMER.schedule(() -> executor().execute(task), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
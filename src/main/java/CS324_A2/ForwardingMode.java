@@ -0,0 +1,30 @@
+package CS324_A2;
+
+/**
+ * ForwardingMode selects how a node passes ELECTION/LEADER messages to its successor.
+ *
+ * BLOCKING: The incoming RPC handler calls the successor with a blocking stub and
+ *           only acknowledges its own caller once the downstream call returns.
+ *           A message travelling k hops keeps k handler threads busy.
+ * ASYNC:    The message is placed on a bounded per-successor queue and the handler
+ *           acknowledges straight away. Queued messages are sent in order with the
+ *           async stub, one call in flight at a time.
+ * STREAM:   Like ASYNC, but messages travel as frames on one long-lived RingStream
+ *           call opened in setNext, with batched acks. Falls back to ASYNC unary
+ *           calls if the stream breaks.
+ *
+ * Selected with the system property "lcr.forwarding" (blocking | async | stream), default stream.
+ */
+public enum ForwardingMode {
+    BLOCKING,
+    ASYNC,
+    STREAM;
+
+    /**
+     * Reads the forwarding mode from the "lcr.forwarding" system property.
+     */
+    public static ForwardingMode fromSystemProperty() {
+        String value = System.getProperty("lcr.forwarding", "stream");
+        return ForwardingMode.valueOf(value.trim().toUpperCase());
+    }
+}
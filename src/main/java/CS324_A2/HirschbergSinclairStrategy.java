@@ -0,0 +1,151 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.Direction;
+import GeorgeFiji.NodeProto.MessageRequest;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * HirschbergSinclairStrategy implements the Hirschberg-Sinclair election.
+ *
+ * Hirschberg-Sinclair Rules:
+ * 1. In phase k a candidate sends PROBE(id, k) both ways around the ring;
+ *    each probe travels 2^k hops
+ * 2. Upon receiving PROBE(id, k) after d hops:
+ *    - If id == myId: The probe went all the way round - declare victory
+ *    - If id < myId: Drop the probe (this candidate can't win)
+ *    - If id > myId and d < 2^k: Pass the probe on in the same direction
+ *    - If id > myId and d == 2^k: Send REPLY(id, k) back the way it came
+ * 3. REPLY(id, k) is passed on until it reaches node id. A candidate that gets
+ *    both replies of phase k starts phase k + 1.
+ *
+ * A candidate only survives phase k if it is the largest ID within 2^k hops,
+ * so at most n / (2^(k-1) + 1) candidates enter phase k and every phase costs
+ * at most 4n messages: O(n log n) in total, regardless of how IDs are placed.
+ */
+public class HirschbergSinclairStrategy implements ElectionStrategy {
+    private final NodeServiceImpl node;    // Node this strategy runs on
+    private final int nodeId;              // The node's ID
+    // Progress of this node's own candidacy (lock-free, like ElectionState)
+    private final AtomicReference<Round> round = new AtomicReference<>(new Round(0, 0, 0));
+
+    private static final int BOTH_REPLIES = 0b11;    // One bit per direction a reply came back from
+
+    /**
+     * Phase this node's candidacy is in, and which of its replies have come back
+     * (bit 1 << direction), so a duplicated reply is not counted as the other one.
+     */
+    private record Round(long epoch, int phase, int replied) { }
+
+    public HirschbergSinclairStrategy(NodeServiceImpl node) {
+        this.node = node;
+        this.nodeId = node.nodeId();
+    }
+
+    @Override
+    public void start(long epoch) {
+        round.updateAndGet(r -> epoch > r.epoch() ? new Round(epoch, 0, 0) : r);
+        probe(epoch, 0);
+    }
+
+    /**
+     * Sends this node's probes of the given phase in both directions.
+     */
+    private void probe(long epoch, int phase) {
+        if (EventJournal.console()) {
+            System.out.println("Node " + nodeId + ": Sending PROBE(candidateId=" + nodeId + ", phase=" + phase + ", epoch=" + epoch + ") both ways");
+        }
+        MessageRequest probe = MessageRequest.newBuilder()
+                .setOrigin(nodeId)
+                .setMessage(nodeId)
+                .setEpoch(epoch)
+                .setPhase(phase)
+                .setHop(1)
+                .setGroup(node.group())
+                .build();
+        node.trace(EventJournal.Type.PROBE, EventJournal.Decision.SENT, probe);
+        node.send(Direction.CLOCKWISE, probe.toBuilder().setDirection(Direction.CLOCKWISE).build());
+        node.send(Direction.COUNTERCLOCKWISE, probe.toBuilder().setDirection(Direction.COUNTERCLOCKWISE).build());
+    }
+
+    @Override
+    public void onElection(MessageRequest request) {
+        if (request.getReply()) {
+            onReply(request);
+        } else {
+            onProbe(request);
+        }
+    }
+
+    private void onProbe(MessageRequest request) {
+        int candidateId = request.getMessage();
+        int phase = request.getPhase();
+        if (EventJournal.console()) {
+            System.out.println("Node " + nodeId + ": Received PROBE(candidateId=" + candidateId + ", phase=" + phase + ", hop=" + request.getHop() + ", " + request.getDirection() + ")");
+        }
+        
+        // CASE 1: My own probe came all the way round - I'm the leader!
+        if (candidateId == nodeId) {
+            node.declareLeader(request.getEpoch());
+        }
+        // CASE 2: Candidate ID is smaller than mine - drop it
+        else if (candidateId < nodeId) {
+            if (EventJournal.console()) {
+                System.out.println("Node " + nodeId + ": Dropped PROBE(candidateId=" + candidateId + ") - my ID is larger");
+            }
+            node.trace(EventJournal.Type.PROBE, EventJournal.Decision.DROPPED, request);
+            node.metrics().electionDropped.increment();
+        }
+        // CASE 3: Probe has not travelled 2^phase hops yet - pass it on
+        else if (request.getHop() < (1 << phase)) {
+            node.trace(EventJournal.Type.PROBE, EventJournal.Decision.FORWARDED, request);
+            node.metrics().electionForwarded.increment();
+            node.send(request.getDirection(), request.toBuilder().setHop(request.getHop() + 1).build());
+        }
+        // CASE 4: Probe reached the end of its neighbourhood - reply to the candidate
+        else {
+            Direction back = opposite(request.getDirection());
+            if (EventJournal.console()) {
+                System.out.println("Node " + nodeId + ": Sending REPLY(candidateId=" + candidateId + ", phase=" + phase + ") " + back);
+            }
+            node.trace(EventJournal.Type.PROBE, EventJournal.Decision.REPLIED, request);
+            node.send(back, request.toBuilder().setReply(true).setDirection(back).build());
+        }
+    }
+
+    private void onReply(MessageRequest request) {
+        int candidateId = request.getMessage();
+        
+        // Someone else's reply - pass it on towards its candidate
+        if (candidateId != nodeId) {
+            node.trace(EventJournal.Type.REPLY, EventJournal.Decision.FORWARDED, request);
+            node.metrics().electionForwarded.increment();
+            node.send(request.getDirection(), request);
+            return;
+        }
+        
+        // One of my replies: after one from each direction, my candidacy enters the next phase
+        long epoch = request.getEpoch();
+        int phase = request.getPhase();
+        int bit = 1 << request.getDirectionValue();
+        Round before = round.getAndUpdate(r -> r.epoch() != epoch || r.phase() != phase || (r.replied() & bit) != 0 ? r
+                : (r.replied() | bit) == BOTH_REPLIES ? new Round(epoch, phase + 1, 0)
+                : new Round(epoch, phase, r.replied() | bit));
+        if (EventJournal.console()) {
+            System.out.println("Node " + nodeId + ": Received REPLY(phase=" + phase + ", " + request.getDirection() + ")");
+        }
+        node.trace(EventJournal.Type.REPLY, EventJournal.Decision.ACCEPTED, request);
+        if (before.epoch() == epoch && before.phase() == phase && (before.replied() | bit) == BOTH_REPLIES
+                && (before.replied() & bit) == 0) {
+            probe(epoch, phase + 1);
+        }
+    }
+
+    private static Direction opposite(Direction direction) {
+        return direction == Direction.CLOCKWISE ? Direction.COUNTERCLOCKWISE : Direction.CLOCKWISE;
+    }
+
+    @Override
+    public boolean bidirectional() {
+        return true;
+    }
+}
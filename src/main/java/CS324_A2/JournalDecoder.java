@@ -0,0 +1,241 @@
+package CS324_A2;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * JournalDecoder rebuilds election traces from EventJournal files.
+ *
+ * Every process (each Node, or one RingSimulator) writes its own journal file.
+ * The decoder reads any number of them, converts each record's System.nanoTime
+ * to wall-clock time with its file's header, and groups the records by election
+ * group and epoch (rings in one process reuse node IDs and often get the same
+ * epoch, so the epoch alone does not identify an election). Each election is printed as one time-ordered trace across all nodes, followed
+ * by a summary: message counts per type and decision, the winner, and how long
+ * the election took until the last node learned the leader.
+ *
+ * Usage: java CS324_A2.JournalDecoder [--group G] [--epoch E] [--summary] file-or-directory...
+ *   A directory stands for all lcr-journal-*.bin files in it.
+ *   --group    only decode elections of this group ("" = default group)
+ *   --epoch    only decode elections with this epoch
+ *   --summary  print the summaries without the per-event trace
+ */
+public class JournalDecoder {
+
+    /**
+     * One decoded journal record.
+     *
+     * @param wallNanos Wall-clock time of the event (nanoseconds since 1970)
+     */
+    public record Event(int group, long epoch, long wallNanos, int node, int origin, int candidate, int hop,
+                        EventJournal.Type type, EventJournal.Decision decision, int direction, int phase) { }
+
+    /**
+     * One election: an epoch of one election group.
+     *
+     * @param group Group ID, see EventJournal.groupId()
+     */
+    public record Election(int group, long epoch) {
+        static final Comparator<Election> ORDER =
+                Comparator.comparingLong(Election::epoch).thenComparingInt(Election::group);
+    }
+
+    /**
+     * One decoded journal file.
+     *
+     * @param groupNames Group ID -> name, from the file's name records
+     */
+    public record Journal(List<Event> events, Map<Integer, String> groupNames) { }
+
+    /**
+     * read: Decodes every record of one journal file.
+     *
+     * @throws IOException If the file cannot be read or is not a journal
+     */
+    public static Journal read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < EventJournal.HEADER_BYTES || buffer.getInt() != EventJournal.MAGIC) {
+            throw new IOException(file + " is not an event journal");
+        }
+        int version = buffer.getInt();
+        if (version != EventJournal.VERSION) throw new IOException(file + ": unsupported journal version " + version);
+        buffer.getLong();                      // Process ID
+        long wallAnchor = buffer.getLong();    // Wall clock (ns) ...
+        long nanoAnchor = buffer.getLong();    // ... at this System.nanoTime()
+        buffer.getLong();                      // Reserved
+
+        EventJournal.Type[] types = EventJournal.Type.values();
+        EventJournal.Decision[] decisions = EventJournal.Decision.values();
+        List<Event> events = new ArrayList<>();
+        Map<Integer, String> groupNames = new HashMap<>();
+        while (buffer.remaining() >= EventJournal.RECORD_BYTES) {
+            if (buffer.get(buffer.position() + 32) == EventJournal.NAME_TYPE) {
+                byte[] name = new byte[EventJournal.NAME_BYTES];
+                buffer.get(name);
+                buffer.getLong();              // Type
+                int group = buffer.getInt();
+                buffer.getInt();               // Reserved
+                int length = 0;
+                while (length < name.length && name[length] != 0) length++;
+                groupNames.put(group, new String(name, 0, length, StandardCharsets.UTF_8));
+                continue;
+            }
+            long epoch = buffer.getLong();
+            long nanos = buffer.getLong();
+            int node = buffer.getInt();
+            int origin = buffer.getInt();
+            int candidate = buffer.getInt();
+            int hop = buffer.getInt();
+            int type = buffer.get();
+            int decision = buffer.get();
+            int direction = buffer.get();
+            buffer.get();                      // Reserved
+            int phase = buffer.getInt();
+            int group = buffer.getInt();
+            buffer.getInt();                   // Reserved
+            if (type <= 0) break;              // Unwritten space after a crash
+            events.add(new Event(group, epoch, wallAnchor + (nanos - nanoAnchor), node, origin, candidate, hop,
+                    types[type - 1], decisions[decision - 1], direction, phase));
+        }
+        return new Journal(events, groupNames);
+    }
+
+    /**
+     * @return How a group is printed: its name if known, else its ID in hex
+     */
+    static String groupName(int group, Map<Integer, String> groupNames) {
+        String name = groupNames.get(group);
+        if (name == null) return String.format("#%08x", group);
+        return name.equals(PeerRegister.DEFAULT_GROUP) ? "default" : name;
+    }
+
+    /**
+     * byElection: Groups events of any number of files by election group and epoch, each in time order.
+     */
+    public static TreeMap<Election, List<Event>> byElection(List<Event> events) {
+        TreeMap<Election, List<Event>> elections = new TreeMap<>(Election.ORDER);
+        for (Event event : events) {
+            elections.computeIfAbsent(new Election(event.group(), event.epoch()), e -> new ArrayList<>()).add(event);
+        }
+        elections.values().forEach(list -> list.sort(Comparator.comparingLong(Event::wallNanos)));
+        return elections;
+    }
+
+    /**
+     * printElection: Prints the trace (optional) and summary of one election.
+     */
+    public static void printElection(Election election, String groupName, List<Event> events, boolean trace,
+                                     PrintStream out) {
+        long start = events.get(0).wallNanos();
+        long end = events.get(events.size() - 1).wallNanos();
+        TreeSet<Integer> nodes = new TreeSet<>();
+        events.forEach(e -> nodes.add(e.node()));
+        out.printf("=== Election epoch %d, group %s: %d nodes, %d events, %.3f ms ===%n",
+                election.epoch(), groupName, nodes.size(), events.size(), (end - start) / 1e6);
+
+        if (trace) {
+            for (Event e : events) {
+                out.printf("  +%10.3f ms  node %-6d %-8s %-9s candidate %-6d origin %d%s%n",
+                        (e.wallNanos() - start) / 1e6, e.node(), e.type(), e.decision(), e.candidate(), e.origin(),
+                        e.type() == EventJournal.Type.PROBE || e.type() == EventJournal.Type.REPLY
+                                ? String.format(" phase %d hop %d %s", e.phase(), e.hop(), e.direction() == 0 ? "CW" : "CCW")
+                                : "");
+            }
+        }
+
+        // Message counts: everything a node sent, forwarded or replied is one message
+        Map<EventJournal.Type, Map<EventJournal.Decision, Integer>> counts = new EnumMap<>(EventJournal.Type.class);
+        int winner = 0;
+        long elected = 0;
+        long lastLearned = 0;
+        int learnedBy = 0;
+        for (Event e : events) {
+            counts.computeIfAbsent(e.type(), t -> new EnumMap<>(EventJournal.Decision.class))
+                    .merge(e.decision(), 1, Integer::sum);
+            if (e.decision() == EventJournal.Decision.ELECTED) {
+                winner = e.node();
+                elected = e.wallNanos();
+            } else if (e.decision() == EventJournal.Decision.LEARNED) {
+                learnedBy++;
+                lastLearned = e.wallNanos();
+            }
+        }
+        counts.forEach((type, decisions) -> out.println("  " + type + ": " + decisions));
+        if (winner == 0) {
+            out.println("  No leader elected in this epoch");
+        } else {
+            out.printf("  Leader: node %d, elected at +%.3f ms, known to %d nodes by +%.3f ms%n",
+                    winner, (elected - start) / 1e6, learnedBy, (Math.max(lastLearned, elected) - start) / 1e6);
+        }
+        out.println();
+    }
+
+    /**
+     * Main entry point: decodes the given journal files (or directories of them).
+     */
+    public static void main(String[] args) throws IOException {
+        Long onlyEpoch = null;
+        List<String> groups = new ArrayList<>();
+        boolean trace = true;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--epoch" -> onlyEpoch = Long.parseLong(args[++i]);
+                case "--group" -> groups.add(args[++i]);
+                case "--summary" -> trace = false;
+                default -> {
+                    Path path = Path.of(args[i]);
+                    if (Files.isDirectory(path)) {
+                        try (DirectoryStream<Path> dir = Files.newDirectoryStream(path, "lcr-journal-*.bin")) {
+                            dir.forEach(files::add);
+                        }
+                    } else {
+                        files.add(path);
+                    }
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: JournalDecoder [--group G] [--epoch E] [--summary] file-or-directory...");
+            System.exit(1);
+        }
+
+        List<Event> events = new ArrayList<>();
+        Map<Integer, String> groupNames = new HashMap<>();
+        for (Path file : files) {
+            Journal decoded = read(file);
+            System.out.println("Read " + decoded.events().size() + " events from " + file);
+            events.addAll(decoded.events());
+            groupNames.putAll(decoded.groupNames());
+        }
+        System.out.println();
+
+        TreeMap<Election, List<Event>> elections = byElection(events);
+        for (Map.Entry<Election, List<Event>> entry : elections.entrySet()) {
+            Election election = entry.getKey();
+            boolean groupWanted = groups.isEmpty()
+                    || groups.stream().anyMatch(name -> EventJournal.groupId(name) == election.group());
+            if (groupWanted && (onlyEpoch == null || onlyEpoch == election.epoch())) {
+                printElection(election, groupName(election.group(), groupNames), entry.getValue(), trace, System.out);
+            }
+        }
+    }
+}
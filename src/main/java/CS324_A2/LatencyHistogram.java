@@ -0,0 +1,93 @@
+package CS324_A2;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram records durations in nanoseconds, HdrHistogram style.
+ *
+ * Values are counted in log-linear buckets: every power of two is split into
+ * SUB_BUCKETS equal buckets, so a reported percentile is within 1/SUB_BUCKETS
+ * (about 6%) of the recorded value, for any value from 1 ns to Long.MAX_VALUE,
+ * in a fixed 960-slot array.
+ *
+ * record() is one atomic array increment plus LongAdder updates - no locks and
+ * no allocation - so it can sit on the message hot path. Percentiles are read
+ * from a racy but consistent-enough walk over the counts.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;                            // log2 of buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;             // Buckets per power of two
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS; // Enough for any non-negative long
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);   // Values per bucket
+    private final LongAdder count = new LongAdder();                        // Values recorded
+    private final LongAdder sum = new LongAdder();                          // Sum of recorded values
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);  // Largest recorded value
+
+    /**
+     * Records one duration (negative values count as 0).
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sumNanos() {
+        return sum.sum();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return Upper bound of the bucket holding that percentile (capped at the maximum), 0 if empty
+     */
+    public long percentileNanos(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(highestValue(i), maxNanos());
+        }
+        return maxNanos();
+    }
+
+    /**
+     * Bucket of a value: values below SUB_BUCKETS have their own bucket, larger values
+     * share a bucket with the values that agree in their top SUB_BITS + 1 bits.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Largest value that falls into the given bucket.
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BITS);
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,76 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageRequest;
+
+/**
+ * LcrStrategy implements the LCR (LeLann-Chang-Roberts) rules.
+ *
+ * LCR Protocol Rules:
+ * 1. Each node sends ELECTION(ownId) clockwise around the ring
+ * 2. Upon receiving ELECTION(id):
+ *    - If id == myId: Declare victory, send LEADER(myId)
+ *    - If id > myId: Forward the message
+ *    - If id < myId: Drop the message
+ *
+ * Both the candidacy and the forwards go through NodeServiceImpl.forwardCandidate,
+ * which with coalescing on (lcr.coalesce) only sends the largest candidate of a burst.
+ */
+public class LcrStrategy implements ElectionStrategy {
+    private final NodeServiceImpl node;    // Node this strategy runs on
+    private final int nodeId;              // The node's ID
+
+    public LcrStrategy(NodeServiceImpl node) {
+        this.node = node;
+        this.nodeId = node.nodeId();
+    }
+
+    @Override
+    public void start(long epoch) {
+        // Send my ID as a candidate around the ring
+        if (EventJournal.console()) {
+            System.out.println("Node " + nodeId + ": Sending ELECTION(candidateId=" + nodeId + ", originNode=" + nodeId + ", epoch=" + epoch + ") to next node " + node.nextNodeId());
+        }
+        MessageRequest candidacy = MessageRequest.newBuilder()
+                .setOrigin(nodeId)
+                .setMessage(nodeId)  // My ID is the candidate
+                .setEpoch(epoch)
+                .setGroup(node.group())
+                .build();
+        node.forwardCandidate(candidacy);
+    }
+
+    @Override
+    public void onElection(MessageRequest request) {
+        int originId = request.getOrigin();
+        int candidateId = request.getMessage();
+        if (EventJournal.console()) {
+            System.out.println("Node " + nodeId + ": Received ELECTION(candidateId=" + candidateId + ", originNode=" + originId + ", epoch=" + request.getEpoch() + ")");
+        }
+        
+        // CASE 1: This is my own ID coming back - I'm the leader!
+        if (candidateId == nodeId) {
+            node.declareLeader(request.getEpoch());
+        } 
+        // CASE 2: Candidate ID is larger than mine - forward it
+        else if (candidateId > nodeId) {
+            if (EventJournal.console()) {
+                System.out.println("Node " + nodeId + ": Forwarding ELECTION(candidateId=" + candidateId + ", originNode=" + originId + ") to next node " + node.nextNodeId());
+            }
+            node.forwardCandidate(request);
+        } 
+        // CASE 3: Candidate ID is smaller than mine - drop it
+        else {
+            if (EventJournal.console()) {
+                System.out.println("Node " + nodeId + ": Dropped ELECTION(candidateId=" + candidateId + ", originNode=" + originId + ") - my ID is larger");
+            }
+            node.trace(EventJournal.Type.ELECTION, EventJournal.Decision.DROPPED, request);
+            // Do nothing - message is not forwarded
+            node.metrics().electionDropped.increment();
+        }
+    }
+
+    @Override
+    public boolean bidirectional() {
+        return false;
+    }
+}
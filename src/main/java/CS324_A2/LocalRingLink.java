@@ -0,0 +1,136 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageRequest;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LocalRingLink passes messages to a neighbour hosted by the same NodeHost.
+ *
+ * There is no channel and no serialization: the MessageRequest object itself is
+ * handed to the target's handleElection/handleLeader. Messages are queued and
+ * delivered by one task at a time on the executor, so the target sees them in
+ * the order they were sent, and a chain of local hops never runs on the
+ * sender's stack (whatever the forwarding mode, the sender does not wait).
+ *
+ * The target is looked up by node ID and group for every message, so a node
+ * the host stopped hosting gets nothing, and a node added again gets the rest.
+ * While the target is gone this is reported once, not per message.
+ *
+ * Like the other links the queue is bounded (lcr.forward.capacity): when it is
+ * full a message is rejected and reported, so a burst between co-hosted nodes
+ * cannot grow the heap without limit.
+ */
+public class LocalRingLink implements RingLink {
+    private final int nodeId;                             // Owning node's ID (for log output)
+    private final int targetId;                           // Neighbour's node ID
+    private final String group;                           // Group of the owning member (the target's member of it gets the messages)
+    private final NodeHost host;                          // Host of both nodes
+    private final Executor executor;                      // Runs the deliveries
+    private final int capacity;                           // Maximum number of queued messages
+    private final Queue<Inbound> pending = new ConcurrentLinkedQueue<>();  // Messages not yet delivered
+    private final AtomicInteger queued = new AtomicInteger();             // Size of pending
+    private final AtomicBoolean delivering = new AtomicBoolean(false);      // True while a delivery task runs
+    private volatile boolean closed = false;              // True once the link was closed
+    private int missed = 0;                               // Delivery task only: messages dropped since the target went away
+
+    /**
+     * A queued message together with the handler it goes to.
+     */
+    private record Inbound(boolean leader, MessageRequest request) { }
+
+    public LocalRingLink(int nodeId, int targetId, String group, NodeHost host, Executor executor) {
+        this.nodeId = nodeId;
+        this.targetId = targetId;
+        this.group = group;
+        this.host = host;
+        this.executor = executor;
+        this.capacity = AsyncRingLink.DEFAULT_CAPACITY;
+    }
+
+    @Override
+    public int targetId() {
+        return targetId;
+    }
+
+    @Override
+    public void sendElection(MessageRequest request) {
+        enqueue(new Inbound(false, request));
+    }
+
+    @Override
+    public void sendLeader(MessageRequest request) {
+        enqueue(new Inbound(true, request));
+    }
+
+    /**
+     * Adds a message to the queue and starts a delivery task if none is running.
+     */
+    private void enqueue(Inbound message) {
+        if (closed) return;
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            System.err.println("Node " + nodeId + ": Local queue to node " + targetId + " is full - rejected "
+                    + (message.leader() ? "LEADER" : "ELECTION") + "(" + message.request().getMessage() + ")");
+            return;
+        }
+        pending.add(message);
+        if (delivering.compareAndSet(false, true)) {
+            executor.execute(this::deliver);
+        }
+    }
+
+    /**
+     * Delivers queued messages until the queue is empty.
+     */
+    private void deliver() {
+        while (true) {
+            Inbound next;
+            while ((next = pending.poll()) != null) {
+                queued.decrementAndGet();
+                deliver(next);
+            }
+            // Release the flag, then re-check in case a message was queued after the last poll()
+            delivering.set(false);
+            if (pending.isEmpty() || !delivering.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void deliver(Inbound message) {
+        NodeServiceImpl target = host.member(targetId, group);
+        if (target == null) {
+            if (missed++ == 0) {
+                System.err.println("Node " + nodeId + ": Failed to forward " + (message.leader() ? "LEADER" : "ELECTION")
+                        + " to node " + targetId + ": no longer hosted here (further messages are dropped silently)");
+            }
+            return;
+        }
+        if (missed > 0) {
+            System.err.println("Node " + nodeId + ": Node " + targetId + " is hosted again - " + missed + " message(s) were dropped");
+            missed = 0;
+        }
+        try {
+            if (message.leader()) {
+                target.handleLeader(message.request());
+            } else {
+                target.handleElection(message.request());
+            }
+        } catch (RuntimeException e) {
+            // A failing handler must not stop the deliveries behind it (a gRPC call would just fail)
+            System.err.println("Node " + nodeId + ": Failed to forward " + (message.leader() ? "LEADER" : "ELECTION")
+                    + " to node " + targetId + ": " + e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        pending.clear();
+        queued.set(0);
+    }
+}
@@ -0,0 +1,107 @@
+package CS324_A2;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MetricsInterceptor measures RPC latency per method, on both ends of a call.
+ *
+ * Server side (NodeServiceImpl/PeerRegister.bindService):
+ * - unary methods: time from call start until the handler closes the call
+ * - streaming methods (RingStream): time to handle each inbound message,
+ *   i.e. one ring hop's local processing
+ *
+ * Client side (channels opened by the node or registry):
+ * - unary methods: round trip from start until the response status arrives,
+ *   i.e. the per-hop latency in ASYNC/BLOCKING forwarding. Failed calls are counted.
+ * - streaming calls are passed through untouched (their lifetime is not a latency).
+ *
+ * Histograms are keyed by full method name, e.g. "NodeService/SendElection".
+ */
+public class MetricsInterceptor implements ServerInterceptor, ClientInterceptor {
+    private final Map<String, LatencyHistogram> serverLatency = new ConcurrentHashMap<>();  // Handling time per method
+    private final Map<String, LatencyHistogram> clientLatency = new ConcurrentHashMap<>();  // Round trip per method
+    private final Map<String, LongAdder> clientFailures = new ConcurrentHashMap<>();        // Failed calls per method
+
+    public Map<String, LatencyHistogram> serverLatency() {
+        return serverLatency;
+    }
+
+    public Map<String, LatencyHistogram> clientLatency() {
+        return clientLatency;
+    }
+
+    public Map<String, LongAdder> clientFailures() {
+        return clientFailures;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        LatencyHistogram histogram = serverLatency.computeIfAbsent(method.getFullMethodName(), name -> new LatencyHistogram());
+
+        if (method.getType() == MethodDescriptor.MethodType.UNARY) {
+            long start = System.nanoTime();
+            return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+                @Override
+                public void close(Status status, Metadata trailers) {
+                    histogram.record(System.nanoTime() - start);
+                    super.close(status, trailers);
+                }
+            }, headers);
+        }
+
+        // Streaming: time each message the handler processes
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                long start = System.nanoTime();
+                super.onMessage(message);
+                histogram.record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                               Channel next) {
+        if (method.getType() != MethodDescriptor.MethodType.UNARY) {
+            return next.newCall(method, callOptions);
+        }
+        String name = method.getFullMethodName();
+        LatencyHistogram histogram = clientLatency.computeIfAbsent(name, key -> new LatencyHistogram());
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                long start = System.nanoTime();
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        histogram.record(System.nanoTime() - start);
+                        if (!status.isOk()) {
+                            clientFailures.computeIfAbsent(name, key -> new LongAdder()).increment();
+                        }
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+}
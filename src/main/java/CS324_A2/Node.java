@@ -1,112 +1,214 @@
 package CS324_A2;
 
+import GeorgeFiji.NodeProto.LeaderResponse;
 import GeorgeFiji.NodeProto.RegisterRequest;
 import GeorgeFiji.NodeProto.MessageRequest;
+import GeorgeFiji.NodeProto.MessageResponse;
 import GeorgeFiji.PeerRegisterServiceGrpc;
 import io.grpc.Server;
-import io.grpc.ServerBuilder;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.StatusRuntimeException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Node represents a process in the LCR Leader Election ring.
  * Each node has a unique ID and can participate in leader election.
- * Nodes automatically register with PeerRegister on startup.
+ * Nodes automatically register with PeerRegister on startup, retrying with
+ * jittered backoff until it is reachable.
+ * A node can take part in several election groups (independent rings, each
+ * with its own leader) through its one gRPC service; see NodeGroups.
+ * The service listens on every endpoint of lcr.transport (TCP port
+ * 50000 + nodeId by default, a Unix domain socket, or in-process; see Endpoint).
  */
 public class Node {
+    // Registration attempts per group before leaving it to the heartbeat
+    static final int REGISTER_ATTEMPTS = Integer.getInteger("lcr.register.attempts", 10);
+    // How long one attempt waits for PeerRegister to become reachable and answer
+    static final long REGISTER_DEADLINE_MS = Long.getLong("lcr.register.deadlineMs", 10_000);
+
     private final int nodeId;                    // Unique identifier for this node
-    private final Server server;                  // gRPC server to receive messages
-    private final NodeServiceImpl serviceImpl;    // Service implementation for LCR protocol
+    private final List<Endpoint> endpoints;       // Endpoints this node listens on
+    private final List<Server> servers = new ArrayList<>();  // One gRPC server per endpoint to receive messages
+    private final NodeGroups groups;              // One service implementation per election group
+    private final List<String> groupNames;        // Groups this node joins, in command-line order
     private ManagedChannel registerChannel;       // Channel to communicate with PeerRegister
+    private final List<RegistryHeartbeat> heartbeats = new ArrayList<>();  // Keep this node's leases with PeerRegister alive
 
     /**
-     * Constructor: Creates a new node with the specified ID.
+     * Constructor: Creates a new node with the specified ID in the default group.
      * @param nodeId Unique integer identifier for this node
      */
     public Node(int nodeId) throws IOException {
+        this(nodeId, List.of(PeerRegister.DEFAULT_GROUP));
+    }
+
+    /**
+     * Constructor: Creates a new node with the specified ID that joins the given groups.
+     * @param nodeId Unique integer identifier for this node
+     * @param groupNames Election groups to take part in
+     */
+    public Node(int nodeId, List<String> groupNames) throws IOException {
         this.nodeId = nodeId;
-        this.serviceImpl = new NodeServiceImpl(nodeId);
-        // Each node runs on port 50000 + nodeId (e.g., Node 1 on port 50001)
-        this.server = ServerBuilder.forPort(50000 + nodeId).addService(serviceImpl).build();
+        this.groups = new NodeGroups(nodeId);
+        this.groupNames = List.copyOf(groupNames);
+        groupNames.forEach(groups::join);
+        // Each node listens on its lcr.transport endpoints (by default port 50000 + nodeId,
+        // e.g., Node 1 on port 50001), with its handlers on the same threads (virtual by
+        // default) as its channels
+        this.endpoints = Endpoint.forNode(nodeId);
+        for (Endpoint endpoint : endpoints) {
+            servers.add(endpoint.serverBuilder()
+                    .executor(groups.execution().executor())
+                    .addService(groups)
+                    .build());
+        }
+        groups.advertise(endpoints);
     }
 
     /**
-     * Starts the node's gRPC server and registers with PeerRegister.
+     * Starts the node's gRPC servers and registers with PeerRegister.
      */
     public void start() throws IOException {
-        server.start();
-        System.out.println("Node " + nodeId + " started on port " + (50000 + nodeId));
+        for (Server server : servers) server.start();
+        System.out.println("Node " + nodeId + " started on "
+                + String.join(", ", endpoints.stream().map(Endpoint::describe).toList())
+                + " (" + groups.execution() + " threads)");
         registerWithPeerRegister();
     }
 
     /**
-     * Registers this node with the PeerRegister service.
-     * PeerRegister will add this node to the ring topology.
-     * Uses OkHttp transport (via ManagedChannelBuilder) for Java 21 compatibility.
+     * Registers this node with the PeerRegister service, once per group.
+     * PeerRegister will add this node to each group's ring topology.
+     * PeerRegister is reached at lcr.registry.endpoint (TCP port 50099 by default).
+     * 
+     * The node's own server is already listening, so there is no start-up delay.
+     * Each call waits for the channel to PeerRegister to become ready (up to
+     * REGISTER_DEADLINE_MS) instead of failing at once, and a failed attempt is
+     * retried after a jittered backoff (see Backoff), REGISTER_ATTEMPTS times in
+     * total. After that the node keeps running and its heartbeat registers it as
+     * soon as PeerRegister answers.
      */
     private void registerWithPeerRegister() {
-        try {
-            // Brief delay to ensure server is ready
-            Thread.sleep(500);
-            
-            // Create channel to PeerRegister (running on port 50099)
-            // Uses 127.0.0.1 instead of localhost for explicit IPv4
-            registerChannel = ManagedChannelBuilder
-                    .forAddress("127.0.0.1", 50099)
-                    .usePlaintext()  // No TLS encryption for local testing
-                    .build();
+        // Create channel to PeerRegister (by default 127.0.0.1, port 50099)
+        registerChannel = Endpoint.registry().open(groups.execution().executor());
+        
+        // Blocking stub that waits for the registry to be reachable instead of failing fast
+        PeerRegisterServiceGrpc.PeerRegisterServiceBlockingStub stub = 
+                PeerRegisterServiceGrpc.newBlockingStub(registerChannel).withWaitForReady();
+        Backoff backoff = new Backoff();
+        
+        for (String group : groupNames) {
+            // Registration request with this node's ID, port, group and endpoints
+            RegisterRequest request = groups.member(group).registerRequest();
             
-            // Create blocking stub for synchronous RPC calls
-            PeerRegisterServiceGrpc.PeerRegisterServiceBlockingStub stub = 
-                    PeerRegisterServiceGrpc.newBlockingStub(registerChannel);
-            
-            // Build registration request with this node's ID and port
-            RegisterRequest request = RegisterRequest.newBuilder()
-                    .setNodeId(nodeId)
-                    .setPort(50000 + nodeId)
-                    .build();
+            // Send registration request to PeerRegister, retrying with backoff
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    stub.withDeadlineAfter(REGISTER_DEADLINE_MS, TimeUnit.MILLISECONDS).registerNode(request);
+                    System.out.println("Node " + nodeId + " registered with PeerRegister successfully" + describe(group)
+                            + (attempt > 1 ? " (attempt " + attempt + ")" : ""));
+                    break;
+                } catch (StatusRuntimeException e) {
+                    if (attempt >= REGISTER_ATTEMPTS) {
+                        // The heartbeat registers the node as soon as PeerRegister answers
+                        System.err.println("Node " + nodeId + " failed to register" + describe(group) + " after " + attempt
+                                + " attempts: " + e.getStatus() + " - will register when PeerRegister is reachable");
+                        break;
+                    }
+                    long delay = backoff.nextDelayMillis();
+                    System.err.println("Node " + nodeId + " could not register" + describe(group) + " (attempt " + attempt
+                            + ": " + e.getStatus().getCode() + "), retrying in " + delay + " ms");
+                    if (!sleep(delay)) return;
+                }
+            }
+            backoff.reset();
             
-            // Send registration request to PeerRegister
-            stub.registerNode(request);
-            System.out.println("Node " + nodeId + " registered with PeerRegister successfully");
-        } catch (Exception e) {
-            System.err.println("Node " + nodeId + " failed to register: " + e.getClass().getName() + " - " + e.getMessage());
-            e.printStackTrace();
+            // Renew the lease periodically so PeerRegister can detect if this node dies
+            heartbeats.add(new RegistryHeartbeat(groups.member(group), registerChannel));
+        }
+    }
+
+    /**
+     * @return False if the thread was interrupted while sleeping
+     */
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 
+    /**
+     * @return " in group X" for log lines, empty for the default group
+     */
+    private static String describe(String group) {
+        return group.isEmpty() ? "" : " in group " + group;
+    }
+
     /**
      * Handles user commands for initiating elections or shutting down the node.
+     * Every command except exit takes an optional group name (default: the
+     * node's first group).
      * Commands:
-     *   - "election": Triggers election in ALL registered nodes via PeerRegister
+     *   - "election [group]": Triggers election in ALL nodes of the group via PeerRegister
+     *   - "leader [group]": Shows the group's cached leader and its remaining lease
+     *   - "stats [group]": Prints this node's metrics in Prometheus text format
      *   - "exit": Cleanly shuts down the node and exits
      */
     public void handleUserInput() {
         Scanner scanner = new Scanner(System.in);
+        String firstGroup = groupNames.get(0);
         while (true) {
-            System.out.println("Node " + nodeId + ": Enter 'election' to start election or 'exit' to quit:");
-            String input = scanner.nextLine().trim();
+            System.out.println("Node " + nodeId + ": Enter 'election' to start election, 'leader' to show the leader, 'stats' for metrics or 'exit' to quit:");
+            String[] words = scanner.nextLine().trim().split("\\s+", 2);
+            String input = words[0];
+            String group = words.length > 1 ? words[1] : firstGroup;
+            NodeServiceImpl member = groups.member(group);
+            if (member == null && !input.equalsIgnoreCase("exit")) {
+                System.err.println("Node " + nodeId + ": Not a member of group " + group + " (groups: " + groupNames + ")");
+                continue;
+            }
             
             if (input.equalsIgnoreCase("election")) {
                 // Broadcast election start to ALL registered nodes via PeerRegister
-                System.out.println("Node " + nodeId + ": Requesting PeerRegister to start election in all nodes...");
+                System.out.println("Node " + nodeId + ": Requesting PeerRegister to start election in all nodes" + describe(group) + "...");
                 try {
                     PeerRegisterServiceGrpc.PeerRegisterServiceBlockingStub registerStub = 
                         PeerRegisterServiceGrpc.newBlockingStub(registerChannel);
-                    registerStub.broadcastElectionStart(MessageRequest.newBuilder()
+                    MessageResponse result = registerStub.broadcastElectionStart(MessageRequest.newBuilder()
                             .setOrigin(nodeId)
                             .setMessage(0)
+                            .setGroup(group)
                             .build());
                     System.out.println("Node " + nodeId + ": Election broadcast sent to PeerRegister");
+                    if (result.getFailedNodesCount() > 0) {
+                        System.err.println("Node " + nodeId + ": PeerRegister could not reach nodes " + result.getFailedNodesList());
+                    }
                 } catch (Exception e) {
                     System.err.println("Node " + nodeId + ": Failed to broadcast election: " + e.getMessage());
                 }
+            } else if (input.equalsIgnoreCase("leader")) {
+                LeaderResponse leader = member.leaderResponse();
+                if (leader.getLeaderId() == 0) {
+                    System.out.println("Node " + nodeId + ": No leader known yet" + describe(group));
+                } else {
+                    System.out.println("Node " + nodeId + ": Leader" + describe(group) + " is Node " + leader.getLeaderId() + " (epoch " + leader.getEpoch() + ", "
+                            + (leader.getLeaseMillis() > 0 ? "lease valid for " + leader.getLeaseMillis() + " ms" : "lease expired") + ")");
+                }
+            } else if (input.equalsIgnoreCase("stats")) {
+                System.out.print(member.metrics().export(nodeId, group).getPrometheus());
             } else if (input.equalsIgnoreCase("exit")) {
                 // Clean shutdown: close server, service, and channels
-                server.shutdown();
-                serviceImpl.shutdown();
+                heartbeats.forEach(RegistryHeartbeat::close);
+                servers.forEach(Server::shutdown);
+                groups.shutdown();
                 if (registerChannel != null) registerChannel.shutdown();
                 scanner.close();
                 System.exit(0);
@@ -116,17 +218,19 @@ public class Node {
 
     /**
      * Main entry point: Creates and starts a node with the given ID.
-     * Usage: java CS324_A2.Node <nodeId>
+     * Usage: java CS324_A2.Node <nodeId> [group ...]
      * Example: java CS324_A2.Node 5
+     *          java CS324_A2.Node 5 orders payments   (member of two independent rings)
      */
     public static void main(String[] args) {
         if (args.length < 1) {
-            System.err.println("Usage: java CS324_A2.Node <nodeId>");
+            System.err.println("Usage: java CS324_A2.Node <nodeId> [group ...]");
             System.exit(1);
         }
         try {
-            // Parse node ID from command line argument
-            Node node = new Node(Integer.parseInt(args[0]));
+            // Parse node ID and groups from command line arguments
+            List<String> groupNames = args.length > 1 ? List.of(args).subList(1, args.length) : List.of(PeerRegister.DEFAULT_GROUP);
+            Node node = new Node(Integer.parseInt(args[0]), groupNames);
             node.start();           // Start gRPC server and register
             node.handleUserInput(); // Wait for user commands
         } catch (Exception e) {
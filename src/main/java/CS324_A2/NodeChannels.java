@@ -0,0 +1,125 @@
+package CS324_A2;
+
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * NodeChannels opens a gRPC channel to a node, given only its node ID.
+ *
+ * Nodes and PeerRegister use this instead of building channels inline, so the
+ * same code can run over TCP (one process per node, port 50000 + nodeId) or
+ * over the in-process transport (many nodes inside one JVM, see RingSimulator).
+ * An EndpointDirectory in front of them uses the endpoints nodes advertise
+ * instead (Unix domain sockets, in-process or other TCP addresses).
+ */
+@FunctionalInterface
+public interface NodeChannels {
+
+    /**
+     * Opens a new channel to the given node. The caller owns the channel and must shut it down.
+     */
+    ManagedChannel open(int nodeId);
+
+    /**
+     * Records the endpoints a node advertised, for channels opened from now on.
+     * Ignored unless an EndpointDirectory is behind these channels.
+     *
+     * @return True if what was known about the node changed
+     */
+    default boolean learn(int nodeId, List<Endpoint> endpoints) {
+        return false;
+    }
+
+    /**
+     * @return The endpoints the node advertised (empty if unknown or not tracked)
+     */
+    default List<Endpoint> endpoints(int nodeId) {
+        return List.of();
+    }
+
+    /**
+     * A link that hands messages straight to the target's member of the group, if the
+     * target is hosted in this process by the same NodeHost (no gRPC, no serialization).
+     *
+     * @return The link, or null if the target has to be reached through a channel
+     */
+    default RingLink localLink(int nodeId, int targetId, String group) {
+        return null;
+    }
+
+    /**
+     * The same channels with client interceptors applied (e.g. a MetricsInterceptor).
+     */
+    default NodeChannels intercepted(ClientInterceptor... interceptors) {
+        NodeChannels channels = this;
+        return new NodeChannels() {
+            @Override
+            public ManagedChannel open(int nodeId) {
+                return new InterceptedChannel(channels.open(nodeId), interceptors);
+            }
+
+            @Override
+            public boolean learn(int nodeId, List<Endpoint> endpoints) {
+                return channels.learn(nodeId, endpoints);
+            }
+
+            @Override
+            public List<Endpoint> endpoints(int nodeId) {
+                return channels.endpoints(nodeId);
+            }
+
+            @Override
+            public RingLink localLink(int nodeId, int targetId, String group) {
+                return channels.localLink(nodeId, targetId, group);
+            }
+        };
+    }
+
+    /**
+     * Plaintext TCP to 127.0.0.1:(50000 + nodeId) - the standard deployment.
+     * Call callbacks run on the configured ExecutionMode.
+     */
+    static NodeChannels tcp() {
+        return tcp(ExecutionMode.fromSystemProperty().executor());
+    }
+
+    /**
+     * Plaintext TCP whose call callbacks (e.g. AsyncRingLink's next send) run on the given executor.
+     */
+    static NodeChannels tcp(Executor executor) {
+        return nodeId -> ManagedChannelBuilder
+                .forAddress("127.0.0.1", 50000 + nodeId)
+                .usePlaintext()  // No TLS for local testing
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * In-process transport to servers registered under inProcessName(namespace, nodeId).
+     * The namespace keeps several simulated rings in one JVM apart.
+     */
+    static NodeChannels inProcess(String namespace) {
+        return inProcess(namespace, ExecutionMode.fromSystemProperty().executor());
+    }
+
+    /**
+     * In-process transport whose call callbacks run on the given executor.
+     */
+    static NodeChannels inProcess(String namespace, Executor executor) {
+        return nodeId -> InProcessChannelBuilder
+                .forName(inProcessName(namespace, nodeId))
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Name under which a node's in-process server is registered.
+     */
+    static String inProcessName(String namespace, int nodeId) {
+        return namespace + "-node-" + nodeId;
+    }
+}
@@ -0,0 +1,207 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.LeaderResponse;
+import GeorgeFiji.NodeProto.MessageRequest;
+import GeorgeFiji.NodeProto.MessageResponse;
+import GeorgeFiji.NodeProto.RingAck;
+import GeorgeFiji.NodeProto.RingFrame;
+import GeorgeFiji.NodeProto.StatsResponse;
+import GeorgeFiji.NodeServiceGrpc;
+import io.grpc.BindableService;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * NodeGroups lets one node take part in several election groups through one gRPC server.
+ *
+ * Each group is an independent ring with its own leader. The node has one
+ * NodeServiceImpl per group it joined, each with its own links and election
+ * state, and NodeGroups routes every incoming call to the member named by the
+ * request's group field. Calls for a group the node has not joined fail with
+ * NOT_FOUND.
+ *
+ * All members share one RPC interceptor and one connection per neighbour
+ * (SharedChannels), so joining another group adds no server, port or
+ * connection to a neighbour the node already talks to. Neighbours' advertised
+ * endpoints are shared too (one EndpointDirectory), as are the node's own.
+ * A NodeHost serves many NodeGroups behind one server the same way, one level up.
+ */
+public class NodeGroups implements NodeServiceGrpc.AsyncService, BindableService {
+    private final int nodeId;                          // This node's unique ID
+    private final ForwardingMode forwardingMode;       // Forwarding mode of every member
+    private final ElectionAlgorithm algorithm;         // Election algorithm of every member
+    private final ExecutionMode execution;             // Threads of the server, channels and election starts
+    private final NodeChannels channels;               // Connections shared by all members
+    private final MetricsInterceptor rpc = new MetricsInterceptor();  // RPC latency of all groups
+    private final Map<String, NodeServiceImpl> members = new ConcurrentHashMap<>();  // Group -> membership
+    private volatile List<Endpoint> endpoints = List.of();             // Endpoints the node listens on
+
+    /**
+     * Constructor: Node reaching its neighbours over TCP, with the configured forwarding mode,
+     * algorithm and execution mode.
+     */
+    public NodeGroups(int nodeId) {
+        this(nodeId, ForwardingMode.fromSystemProperty(), NodeChannels.tcp(), ElectionAlgorithm.fromSystemProperty(),
+                ExecutionMode.fromSystemProperty());
+    }
+
+    public NodeGroups(int nodeId, ForwardingMode forwardingMode, NodeChannels channels, ElectionAlgorithm algorithm,
+                      ExecutionMode execution) {
+        this(nodeId, forwardingMode, algorithm, execution,
+                new SharedChannels(new EndpointDirectory(channels, execution.executor())));
+    }
+
+    /**
+     * Constructor: Node whose members use the given channels as they are, already shared
+     * and with an EndpointDirectory behind them (e.g. by every node of a NodeHost).
+     */
+    NodeGroups(int nodeId, ForwardingMode forwardingMode, ElectionAlgorithm algorithm, ExecutionMode execution,
+               NodeChannels sharedChannels) {
+        this.nodeId = nodeId;
+        this.forwardingMode = forwardingMode;
+        this.algorithm = algorithm;
+        this.execution = execution;
+        this.channels = sharedChannels;
+    }
+
+    /**
+     * join: Creates this node's member of a group (or returns the existing one).
+     * The node still has to register with PeerRegister for that group.
+     */
+    public NodeServiceImpl join(String group) {
+        return members.computeIfAbsent(group, g -> {
+            NodeServiceImpl member = new NodeServiceImpl(nodeId, forwardingMode, channels, algorithm, execution, g, rpc);
+            member.advertise(endpoints);
+            return member;
+        });
+    }
+
+    /**
+     * advertise: Sets the endpoints this node listens on, for every group it is in or joins later.
+     */
+    public void advertise(List<Endpoint> endpoints) {
+        this.endpoints = List.copyOf(endpoints);
+        members.values().forEach(member -> member.advertise(this.endpoints));
+    }
+
+    /**
+     * leave: Drops this node's member of a group and closes its links.
+     */
+    public void leave(String group) {
+        NodeServiceImpl member = members.remove(group);
+        if (member != null) member.shutdown();
+    }
+
+    /**
+     * @return This node's member of the group, or null if it has not joined it
+     */
+    public NodeServiceImpl member(String group) {
+        return members.get(group);
+    }
+
+    /**
+     * @return Groups this node has joined
+     */
+    public List<String> groups() {
+        return new ArrayList<>(members.keySet());
+    }
+
+    public int nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return Execution mode of this node; its server should use execution().executor() too
+     */
+    public ExecutionMode execution() {
+        return execution;
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        return ServerInterceptors.intercept(NodeServiceGrpc.bindService(this), rpc);
+    }
+
+    /**
+     * route: Finds the member for a request, or fails the call if the group is unknown.
+     */
+    private NodeServiceImpl route(MessageRequest request, StreamObserver<?> responseObserver) {
+        NodeServiceImpl member = members.get(request.getGroup());
+        if (member == null) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription("Node " + nodeId + " is not in group '" + request.getGroup() + "'")
+                    .asRuntimeException());
+        }
+        return member;
+    }
+
+    @Override
+    public void sendElection(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeServiceImpl member = route(request, responseObserver);
+        if (member != null) member.sendElection(request, responseObserver);
+    }
+
+    @Override
+    public void sendLeader(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeServiceImpl member = route(request, responseObserver);
+        if (member != null) member.sendLeader(request, responseObserver);
+    }
+
+    @Override
+    public void setNext(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeServiceImpl member = route(request, responseObserver);
+        if (member != null) member.setNext(request, responseObserver);
+    }
+
+    @Override
+    public void setPrev(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeServiceImpl member = route(request, responseObserver);
+        if (member != null) member.setPrev(request, responseObserver);
+    }
+
+    @Override
+    public void setFingers(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeServiceImpl member = route(request, responseObserver);
+        if (member != null) member.setFingers(request, responseObserver);
+    }
+
+    @Override
+    public void triggerElection(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeServiceImpl member = route(request, responseObserver);
+        if (member != null) member.triggerElection(request, responseObserver);
+    }
+
+    @Override
+    public void getLeader(MessageRequest request, StreamObserver<LeaderResponse> responseObserver) {
+        NodeServiceImpl member = route(request, responseObserver);
+        if (member != null) member.getLeader(request, responseObserver);
+    }
+
+    @Override
+    public void getStats(MessageRequest request, StreamObserver<StatsResponse> responseObserver) {
+        NodeServiceImpl member = route(request, responseObserver);
+        if (member != null) member.getStats(request, responseObserver);
+    }
+
+    /**
+     * ringStream: The predecessor's link in any group; each frame goes to the member of its payload's group.
+     */
+    @Override
+    public StreamObserver<RingFrame> ringStream(StreamObserver<RingAck> responseObserver) {
+        return new RingStreamReceiver(members::get, responseObserver);
+    }
+
+    /**
+     * shutdown: Closes the links of every group.
+     */
+    public void shutdown() {
+        members.values().forEach(NodeServiceImpl::shutdown);
+        members.clear();
+    }
+}
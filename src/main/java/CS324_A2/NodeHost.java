@@ -0,0 +1,279 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.LeaderResponse;
+import GeorgeFiji.NodeProto.MessageRequest;
+import GeorgeFiji.NodeProto.MessageResponse;
+import GeorgeFiji.NodeProto.RingAck;
+import GeorgeFiji.NodeProto.RingFrame;
+import GeorgeFiji.NodeProto.StatsResponse;
+import GeorgeFiji.NodeServiceGrpc;
+import io.grpc.BindableService;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * NodeHost runs many nodes behind one gRPC service, so they share one server,
+ * one set of endpoints and one event loop instead of a process and a port each.
+ *
+ * Every hosted node is a NodeGroups (its members of one or more election groups).
+ * Calls name the node they are for in the lcr-target header, which every channel
+ * opened through an EndpointDirectory sets (see target()); NodeHost routes each
+ * call to that node, and NodeGroups routes it on to the member of the request's
+ * group. Calls for a node that is not hosted here fail with NOT_FOUND.
+ *
+ * Hosted nodes share their channels. A link to a node hosted by the same NodeHost
+ * is a LocalRingLink: messages are handed to the target's handler directly, without
+ * gRPC or serialization. Only links to nodes elsewhere open a channel, and all hosted
+ * nodes advertise the host's endpoints, so PeerRegister and other processes reach
+ * them through the one server.
+ */
+public class NodeHost implements NodeServiceGrpc.AsyncService, BindableService {
+    // Call header naming the node a call is for
+    static final Metadata.Key<String> TARGET_HEADER = Metadata.Key.of("lcr-target", Metadata.ASCII_STRING_MARSHALLER);
+    // The lcr-target of the call being handled (0 if the header is missing or malformed)
+    private static final Context.Key<Integer> TARGET = Context.keyWithDefault("lcr-target", 0);
+
+    private final ForwardingMode forwardingMode;       // Forwarding mode of every hosted node's links to other processes
+    private final ElectionAlgorithm algorithm;         // Election algorithm of every hosted node
+    private final ExecutionMode execution;             // Threads of the server, channels and local links
+    private final NodeChannels channels;               // Connections shared by all hosted nodes, plus their local links
+    private final MetricsInterceptor rpc = new MetricsInterceptor();  // RPC latency of the host's server
+    private final Map<Integer, NodeGroups> nodes = new ConcurrentHashMap<>();  // Node ID -> hosted node
+    private volatile List<Endpoint> endpoints = List.of();             // Endpoints the host listens on
+
+    /**
+     * Constructor: Host reaching nodes elsewhere over TCP, with the configured forwarding mode,
+     * algorithm and execution mode.
+     */
+    public NodeHost() {
+        this(ForwardingMode.fromSystemProperty(), NodeChannels.tcp(), ElectionAlgorithm.fromSystemProperty(),
+                ExecutionMode.fromSystemProperty());
+    }
+
+    public NodeHost(ForwardingMode forwardingMode, NodeChannels channels, ElectionAlgorithm algorithm,
+                    ExecutionMode execution) {
+        this.forwardingMode = forwardingMode;
+        this.algorithm = algorithm;
+        this.execution = execution;
+        this.channels = new HostChannels(new SharedChannels(new EndpointDirectory(channels, execution.executor())));
+    }
+
+    /**
+     * @return A client interceptor that names the target node in every call's lcr-target header
+     */
+    static ClientInterceptor target(int nodeId) {
+        Metadata headers = new Metadata();
+        headers.put(TARGET_HEADER, Integer.toString(nodeId));
+        return MetadataUtils.newAttachHeadersInterceptor(headers);
+    }
+
+    /**
+     * add: Starts hosting a node (or returns the hosted one). It still has to join
+     * its groups and register with PeerRegister.
+     */
+    public NodeGroups add(int nodeId) {
+        return nodes.computeIfAbsent(nodeId, id -> {
+            NodeGroups node = new NodeGroups(id, forwardingMode, algorithm, execution, channels);
+            node.advertise(endpoints);
+            return node;
+        });
+    }
+
+    /**
+     * remove: Stops hosting a node and closes its links. Messages still on their way
+     * to it are dropped.
+     */
+    public void remove(int nodeId) {
+        NodeGroups node = nodes.remove(nodeId);
+        if (node != null) node.shutdown();
+    }
+
+    /**
+     * @return The hosted node, or null if it is not hosted here
+     */
+    public NodeGroups node(int nodeId) {
+        return nodes.get(nodeId);
+    }
+
+    /**
+     * @return The hosted node's member of the group, or null if there is none
+     */
+    public NodeServiceImpl member(int nodeId, String group) {
+        NodeGroups node = nodes.get(nodeId);
+        return node == null ? null : node.member(group);
+    }
+
+    /**
+     * @return IDs of the hosted nodes
+     */
+    public List<Integer> nodeIds() {
+        return new ArrayList<>(nodes.keySet());
+    }
+
+    /**
+     * advertise: Sets the endpoints the host listens on; every hosted node advertises them.
+     */
+    public void advertise(List<Endpoint> endpoints) {
+        this.endpoints = List.copyOf(endpoints);
+        nodes.values().forEach(node -> node.advertise(this.endpoints));
+    }
+
+    /**
+     * @return Execution mode of the host; its server should use execution().executor() too
+     */
+    public ExecutionMode execution() {
+        return execution;
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        return ServerInterceptors.intercept(NodeServiceGrpc.bindService(this), rpc, new TargetInterceptor());
+    }
+
+    /**
+     * route: Finds the node a call is for, or fails the call if it is not hosted here.
+     */
+    private NodeGroups route(StreamObserver<?> responseObserver) {
+        int target = TARGET.get();
+        NodeGroups node = nodes.get(target);
+        if (node == null) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription(target == 0 ? "Call has no lcr-target header" : "Node " + target + " is not hosted here")
+                    .asRuntimeException());
+        }
+        return node;
+    }
+
+    @Override
+    public void sendElection(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeGroups node = route(responseObserver);
+        if (node != null) node.sendElection(request, responseObserver);
+    }
+
+    @Override
+    public void sendLeader(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeGroups node = route(responseObserver);
+        if (node != null) node.sendLeader(request, responseObserver);
+    }
+
+    @Override
+    public void setNext(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeGroups node = route(responseObserver);
+        if (node != null) node.setNext(request, responseObserver);
+    }
+
+    @Override
+    public void setPrev(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeGroups node = route(responseObserver);
+        if (node != null) node.setPrev(request, responseObserver);
+    }
+
+    @Override
+    public void setFingers(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeGroups node = route(responseObserver);
+        if (node != null) node.setFingers(request, responseObserver);
+    }
+
+    @Override
+    public void triggerElection(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        NodeGroups node = route(responseObserver);
+        if (node != null) node.triggerElection(request, responseObserver);
+    }
+
+    @Override
+    public void getLeader(MessageRequest request, StreamObserver<LeaderResponse> responseObserver) {
+        NodeGroups node = route(responseObserver);
+        if (node != null) node.getLeader(request, responseObserver);
+    }
+
+    @Override
+    public void getStats(MessageRequest request, StreamObserver<StatsResponse> responseObserver) {
+        NodeGroups node = route(responseObserver);
+        if (node != null) node.getStats(request, responseObserver);
+    }
+
+    /**
+     * ringStream: A link from a node in another process; each frame goes to the target's
+     * member of the frame's group, looked up per frame so a re-added node is found again.
+     */
+    @Override
+    public StreamObserver<RingFrame> ringStream(StreamObserver<RingAck> responseObserver) {
+        int target = TARGET.get();
+        if (route(responseObserver) == null) {
+            return new RingStreamReceiver(group -> null, responseObserver);  // Call already failed; ignore frames
+        }
+        return new RingStreamReceiver(group -> member(target, group), responseObserver);
+    }
+
+    /**
+     * shutdown: Closes the links of every hosted node.
+     */
+    public void shutdown() {
+        nodes.values().forEach(NodeGroups::shutdown);
+        nodes.clear();
+    }
+
+    /**
+     * Puts the lcr-target header of each incoming call into its context, for route().
+     */
+    private static final class TargetInterceptor implements ServerInterceptor {
+        @Override
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                     ServerCallHandler<ReqT, RespT> next) {
+            int target;
+            try {
+                String header = headers.get(TARGET_HEADER);
+                target = header == null ? 0 : Integer.parseInt(header);
+            } catch (NumberFormatException e) {
+                target = 0;  // Answered with NOT_FOUND by route()
+            }
+            return Contexts.interceptCall(Context.current().withValue(TARGET, target), call, headers, next);
+        }
+    }
+
+    /**
+     * The hosted nodes' shared channels, with local links to nodes of this host.
+     */
+    private final class HostChannels implements NodeChannels {
+        private final NodeChannels channels;   // Channels to nodes elsewhere
+
+        HostChannels(NodeChannels channels) {
+            this.channels = channels;
+        }
+
+        @Override
+        public ManagedChannel open(int nodeId) {
+            return channels.open(nodeId);
+        }
+
+        @Override
+        public boolean learn(int nodeId, List<Endpoint> endpoints) {
+            return channels.learn(nodeId, endpoints);
+        }
+
+        @Override
+        public List<Endpoint> endpoints(int nodeId) {
+            return channels.endpoints(nodeId);
+        }
+
+        @Override
+        public RingLink localLink(int nodeId, int targetId, String group) {
+            return nodes.containsKey(targetId) ? new LocalRingLink(nodeId, targetId, group, NodeHost.this, execution.executor()) : null;
+        }
+    }
+}
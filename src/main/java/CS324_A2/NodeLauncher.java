@@ -0,0 +1,231 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageResponse;
+import GeorgeFiji.NodeProto.RegisterRequest;
+import GeorgeFiji.PeerRegisterServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NodeLauncher starts many nodes in one process and registers them with a
+ * single RegisterNodes call.
+ *
+ * Every node is a full node as started by Node: its own NodeGroups behind a
+ * server on each lcr.transport endpoint (TCP port 50000 + nodeId by default),
+ * and a lease heartbeat per group. Only the
+ * bootstrap differs: instead of one RegisterNode call (and one ring splice)
+ * per node, all registrations travel on one client stream, and PeerRegister
+ * links the whole batch in one pass when the stream completes.
+ *
+ * With --host PORT the nodes do not get a server each: one NodeHost serves all
+ * of them on the host's lcr.transport endpoints (TCP port PORT), and their ring
+ * links to each other dispatch locally, without gRPC.
+ *
+ * The launcher prints the cold-start time: from starting the first server
+ * until PeerRegister acknowledged the batch, i.e. every node has its successor.
+ *
+ * Usage: java CS324_A2.NodeLauncher [--host port] <firstId> <count> [group ...]
+ * Example: java CS324_A2.NodeLauncher 1 200   (nodes 1..200 in the default group)
+ *          java CS324_A2.NodeLauncher --host 50500 1 2000   (2000 nodes behind one server)
+ */
+public class NodeLauncher {
+    // Deadline of one RegisterNodes call, including linking the whole batch
+    static final long BATCH_DEADLINE_MS = Long.getLong("lcr.register.batchDeadlineMs", 60_000);
+
+    private final List<NodeGroups> nodes = new ArrayList<>();          // Launched nodes, in ID order
+    private final List<Server> servers = new ArrayList<>();            // Their servers, one per node (or host) and endpoint
+    private final NodeHost host;                                       // Host of all nodes (null = a server per node)
+    private final int hostPort;                                        // TCP port of the host (0 = no host)
+    private final List<RegistryHeartbeat> heartbeats = new ArrayList<>();  // One lease per node and group
+    private final List<String> groupNames;                             // Groups every node joins
+    private final ManagedChannel registerChannel;                      // Channel to PeerRegister (lcr.registry.endpoint)
+
+    /**
+     * Constructor: Creates nodes firstId .. firstId + count - 1, each joining the given groups.
+     */
+    public NodeLauncher(int firstId, int count, List<String> groupNames) {
+        this(firstId, count, groupNames, 0);
+    }
+
+    /**
+     * Constructor: As above; with hostPort > 0 all nodes run in one NodeHost serving on that port.
+     */
+    public NodeLauncher(int firstId, int count, List<String> groupNames, int hostPort) {
+        this.groupNames = List.copyOf(groupNames);
+        this.hostPort = hostPort;
+        this.host = hostPort > 0 ? new NodeHost() : null;
+        if (host != null) host.advertise(Endpoint.forHost(hostPort));
+        for (int id = firstId; id < firstId + count; id++) {
+            NodeGroups node;
+            if (host != null) {
+                node = host.add(id);
+            } else {
+                if (id + 50000 == 50099) throw new IllegalArgumentException("Node ID 99 would use PeerRegister's port");
+                node = new NodeGroups(id);
+                node.advertise(Endpoint.forNode(id));
+            }
+            groupNames.forEach(node::join);
+            nodes.add(node);
+        }
+        this.registerChannel = Endpoint.registry().open(ExecutionMode.fromSystemProperty().executor());
+    }
+
+    /**
+     * Starts every server, registers all nodes in one batch and starts their heartbeats.
+     *
+     * @return Cold-start time in milliseconds
+     */
+    public double start() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        if (host != null) {
+            for (Endpoint endpoint : Endpoint.forHost(hostPort)) {
+                servers.add(endpoint.serverBuilder()
+                        .executor(host.execution().executor())
+                        .addService(host)
+                        .build()
+                        .start());
+            }
+        } else {
+            for (NodeGroups node : nodes) {
+                for (Endpoint endpoint : Endpoint.forNode(node.nodeId())) {
+                    servers.add(endpoint.serverBuilder()
+                            .executor(node.execution().executor())
+                            .addService(node)
+                            .build()
+                            .start());
+                }
+            }
+        }
+
+        List<RegisterRequest> requests = new ArrayList<>();
+        for (String group : groupNames) {
+            for (NodeGroups node : nodes) {
+                requests.add(node.member(group).registerRequest());
+            }
+        }
+        Backoff backoff = new Backoff();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                registerAll(registerChannel, requests, BATCH_DEADLINE_MS);
+                break;
+            } catch (StatusRuntimeException e) {
+                if (attempt >= Node.REGISTER_ATTEMPTS) {
+                    // The heartbeats register every node as soon as PeerRegister answers
+                    System.err.println("NodeLauncher: batch registration failed after " + attempt + " attempts: "
+                            + e.getStatus() + " - nodes will register when PeerRegister is reachable");
+                    break;
+                }
+                long delay = backoff.nextDelayMillis();
+                System.err.println("NodeLauncher: batch registration failed (attempt " + attempt + ": "
+                        + e.getStatus().getCode() + "), retrying in " + delay + " ms");
+                Thread.sleep(delay);
+            }
+        }
+        double coldStartMillis = (System.nanoTime() - start) / 1e6;
+
+        for (NodeGroups node : nodes) {
+            for (String group : groupNames) {
+                heartbeats.add(new RegistryHeartbeat(node.member(group), registerChannel));
+            }
+        }
+        return coldStartMillis;
+    }
+
+    /**
+     * registerAll: Sends registrations on one RegisterNodes stream and waits for
+     * PeerRegister's single acknowledgement, which comes after the rings are linked.
+     * The call waits for PeerRegister to become reachable (up to the deadline) rather
+     * than failing at once. Registering the same nodes again is harmless: members are
+     * only re-linked.
+     *
+     * @throws StatusRuntimeException If the call failed or the deadline passed
+     */
+    public static void registerAll(ManagedChannel registryChannel, List<RegisterRequest> requests, long deadlineMillis)
+            throws InterruptedException {
+        CompletableFuture<MessageResponse> done = new CompletableFuture<>();
+        StreamObserver<RegisterRequest> stream = PeerRegisterServiceGrpc.newStub(registryChannel)
+                .withWaitForReady()
+                .withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS)
+                .registerNodes(new StreamObserver<>() {
+                    @Override
+                    public void onNext(MessageResponse response) {
+                        done.complete(response);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        done.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() { }
+                });
+        requests.forEach(stream::onNext);
+        stream.onCompleted();
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StatusRuntimeException status) throw status;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops every heartbeat, node and server.
+     */
+    public void shutdown() {
+        heartbeats.forEach(RegistryHeartbeat::close);
+        servers.forEach(Server::shutdown);
+        nodes.forEach(NodeGroups::shutdown);
+        registerChannel.shutdown();
+    }
+
+    /**
+     * Main entry point: Launches the nodes and runs until "exit" is typed (or the process is stopped).
+     */
+    public static void main(String[] args) throws Exception {
+        int hostPort = 0;
+        if (args.length > 1 && args[0].equals("--host")) {
+            hostPort = Integer.parseInt(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length < 2) {
+            System.err.println("Usage: java CS324_A2.NodeLauncher [--host port] <firstId> <count> [group ...]");
+            System.exit(1);
+        }
+        int firstId = Integer.parseInt(args[0]);
+        int count = Integer.parseInt(args[1]);
+        if (count < 1) {
+            System.err.println("NodeLauncher: <count> must be at least 1");
+            System.exit(1);
+        }
+        List<String> groupNames = args.length > 2 ? List.of(args).subList(2, args.length) : List.of(PeerRegister.DEFAULT_GROUP);
+
+        NodeLauncher launcher = new NodeLauncher(firstId, count, groupNames, hostPort);
+        Runtime.getRuntime().addShutdownHook(new Thread(launcher::shutdown, "node-launcher-shutdown"));
+        double coldStartMillis = launcher.start();
+        System.out.printf("NodeLauncher: nodes %d..%d started, registered and linked in %.1f ms (%s threads%s)%n",
+                firstId, firstId + count - 1, coldStartMillis, ExecutionMode.fromSystemProperty(),
+                hostPort > 0 ? ", one NodeHost on " + String.join(", ", Endpoint.forHost(hostPort).stream().map(Endpoint::describe).toList()) : "");
+
+        System.out.println("NodeLauncher: Enter 'exit' to stop all nodes");
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = input.readLine()) != null) {
+            if (line.trim().equalsIgnoreCase("exit")) System.exit(0);
+        }
+        // No console (e.g. started in the background): run until the process is stopped
+        launcher.servers.get(0).awaitTermination();
+    }
+}
@@ -0,0 +1,63 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.StatsResponse;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * NodeMetrics counts the protocol messages handled by one node and records its latencies.
+ * Counters are LongAdders and histograms are lock-free, so the hot path never
+ * contends on a shared lock.
+ */
+public class NodeMetrics {
+    public final LongAdder electionReceived = new LongAdder();   // ELECTION messages received
+    public final LongAdder electionSent = new LongAdder();       // ELECTION messages sent (own candidacy + forwards)
+    public final LongAdder electionForwarded = new LongAdder();  // ELECTION messages passed on for another candidate
+    public final LongAdder electionDropped = new LongAdder();    // ELECTION messages dropped (candidate < my ID)
+    public final LongAdder electionStale = new LongAdder();      // ELECTION messages dropped for an outdated epoch
+    public final LongAdder electionCoalesced = new LongAdder();  // ELECTION messages not sent, a larger candidate went instead
+    public final LongAdder leaderReceived = new LongAdder();     // LEADER messages received (hops)
+    public final LongAdder leaderSent = new LongAdder();         // LEADER messages sent (announcement + forwards)
+    public final LongAdder leaderRingPasses = new LongAdder();   // Finger announcements turned into ring passes (stale fingers)
+    public final LatencyHistogram electionLatency = new LatencyHistogram();  // Entering an epoch -> learning its leader
+    public final MetricsInterceptor rpc;                                     // Per-method RPC latency, both call ends
+
+    public NodeMetrics() {
+        this(new MetricsInterceptor());
+    }
+
+    /**
+     * @param rpc RPC interceptor, shared by all election groups of one node (see NodeGroups)
+     */
+    public NodeMetrics(MetricsInterceptor rpc) {
+        this.rpc = rpc;
+    }
+
+    /**
+     * @return All counters and histograms of a node, for GetStats
+     */
+    public StatsResponse export(int nodeId) {
+        return export(nodeId, "");
+    }
+
+    /**
+     * @param group Election group of these counters; adds a group label unless it is the default group
+     * @return All counters and histograms of a node's group membership, for GetStats
+     */
+    public StatsResponse export(int nodeId, String group) {
+        return new StatsExport("node=\"" + nodeId + "\"" + (group.isEmpty() ? "" : "," + StatsExport.label("group", group)))
+                .counter("lcr_election_received_total", "ELECTION messages received", electionReceived.sum())
+                .counter("lcr_election_sent_total", "ELECTION messages sent (own candidacy and forwards)", electionSent.sum())
+                .counter("lcr_election_forwarded_total", "ELECTION messages passed on for another candidate", electionForwarded.sum())
+                .counter("lcr_election_dropped_total", "ELECTION messages dropped by the election rule", electionDropped.sum())
+                .counter("lcr_election_stale_total", "ELECTION messages dropped for an outdated epoch", electionStale.sum())
+                .counter("lcr_election_coalesced_total", "ELECTION messages saved by coalescing: a larger candidate was sent instead", electionCoalesced.sum())
+                .counter("lcr_leader_received_total", "LEADER messages received", leaderReceived.sum())
+                .counter("lcr_leader_sent_total", "LEADER messages sent", leaderSent.sum())
+                .counter("lcr_leader_ring_passes_total", "Finger announcements continued as a ring pass because the finger links were out of date", leaderRingPasses.sum())
+                .latency("lcr_election_latency_seconds", "Time from entering an election until its leader is known", electionLatency)
+                .latencies("lcr_rpc_server_seconds", "Server-side handling time per RPC (per message for streams)", rpc.serverLatency())
+                .latencies("lcr_rpc_client_seconds", "Client-side round trip per unary RPC (one ring hop)", rpc.clientLatency())
+                .counters("lcr_rpc_client_failures_total", "Unary RPCs that ended with an error status", rpc.clientFailures())
+                .build();
+    }
+}
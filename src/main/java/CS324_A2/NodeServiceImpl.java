@@ -1,36 +1,293 @@
 package CS324_A2;
 
+import GeorgeFiji.NodeProto.Direction;
+import GeorgeFiji.NodeProto.LeaderResponse;
 import GeorgeFiji.NodeProto.MessageRequest;
 import GeorgeFiji.NodeProto.MessageResponse;
+import GeorgeFiji.NodeProto.NodeEndpoints;
+import GeorgeFiji.NodeProto.RegisterRequest;
+import GeorgeFiji.NodeProto.RingAck;
+import GeorgeFiji.NodeProto.RingFrame;
+import GeorgeFiji.NodeProto.StatsResponse;
 import GeorgeFiji.NodeServiceGrpc;
+import io.grpc.BindableService;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.stub.StreamObserver;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
 
 /**
- * NodeServiceImpl implements the LCR Leader Election Protocol.
+ * NodeServiceImpl implements a ring node taking part in leader elections.
  * 
- * LCR Protocol Rules:
- * 1. Each node sends ELECTION(ownId) clockwise around the ring
- * 2. Upon receiving ELECTION(id):
- *    - If id == myId: Declare victory, send LEADER(myId)
- *    - If id > myId: Forward the message
- *    - If id < myId: Drop the message
- * 3. LEADER message circulates once so all nodes learn the result
+ * A NodeServiceImpl is one node's membership in one election group (ring).
+ * Every message it sends carries its group; NodeGroups serves several groups
+ * of the same node behind one gRPC server.
+ *
+ * The election algorithm itself is an ElectionStrategy, LCR by default
+ * (see ElectionAlgorithm). Whatever the algorithm, the winner's LEADER
+ * message circulates once so all nodes learn the result.
+ *
+ * Every message carries an election epoch. A node only takes part in the newest
+ * epoch it has seen: older messages are dropped on arrival, so overlapping
+ * elections collapse into the latest one. The per-node election state is an
+ * immutable ElectionState swapped atomically, without locks.
+ *
+ * The last leader this node learned is cached together with a lease, so
+ * GetLeader is answered locally. The lease starts when the LEADER message
+ * arrives and is extended by PeerRegister's heartbeat responses while the
+ * leader keeps renewing its own lease there.
+ *
+ * Every decision on a message is recorded in the binary EventJournal; the
+ * per-message console lines are only printed with -Dlcr.console=true.
+ *
+ * If PeerRegister pushes finger links (lcr.fingers), the LEADER announcement
+ * spreads as a tree over them instead of going around the ring, so every node
+ * knows the leader after about log2(N) hops instead of N (see relayOverFingers).
+ *
+ * With ELECTION coalescing (lcr.coalesce, LCR only) a node sends at most one
+ * candidate per epoch that is not larger than everything it sent before: when a
+ * broadcast starts every node at once, the smaller candidates of a burst are
+ * suppressed, or merged into one send of the largest within lcr.coalesce.windowMs
+ * (see forwardCandidate). The leader is the same; the savings are counted.
+ *
+ * PeerRegister's setNext, setPrev and setFingers carry the endpoints the named
+ * nodes advertised, and links go over the cheapest one this node can use (see
+ * EndpointDirectory); this node's own endpoints are sent with its registration.
+ *
+ * Messages to the successor go through a RingLink. In STREAM (the default) and
+ * ASYNC forwarding modes a handler only makes the local decision, queues the
+ * forward and acknowledges its caller, so no handler thread waits on downstream hops.
  */
-public class NodeServiceImpl extends NodeServiceGrpc.NodeServiceImplBase {
+public class NodeServiceImpl implements NodeServiceGrpc.AsyncService, BindableService {
+    // How long a learned leader is reported as current without a renewal
+    public static final long LEADER_LEASE_MS = Long.getLong("lcr.leader.leaseMs", 1000);
+    // Delay between a trigger and the node's candidacy, so a broadcast does not make every node send at once
+    public static final long TRIGGER_STAGGER_MS = Long.getLong("lcr.trigger.staggerMs", 100);
+    // Only send an ELECTION candidate if it is larger than every candidate already sent in the epoch (LCR)
+    public static final boolean COALESCE = Boolean.getBoolean("lcr.coalesce");
+    // With coalescing: how long the first candidate of a burst waits for larger ones (0 = send at once)
+    public static final long COALESCE_WINDOW_MS = Long.getLong("lcr.coalesce.windowMs", 0);
+
     private final int nodeId;                          // This node's unique ID
-    private int nextNodeId;                             // The ID of the next node in the ring
-    private ManagedChannel nextNodeChannel;             // Channel to successor in ring
-    private NodeServiceGrpc.NodeServiceBlockingStub nextNodeStub;  // Stub for RPC calls
-    private boolean isLeader = false;                   // True if this node won election
-    private boolean leaderAnnounced = false;            // Prevents duplicate announcements
+    private final String group;                        // Election group this instance takes part in ("" = default)
+    private volatile int journalGroup;                 // Group field of this member's journal records
+    private final ForwardingMode forwardingMode;       // How messages are passed to the successor
+    private final ExecutionMode execution;             // Threads that run triggered election starts
+    private final NodeChannels channels;               // Opens channels to other nodes
+    private final ElectionStrategy strategy;           // Election algorithm run by this node
+    private final NodeMetrics metrics;                 // Message counters for this node
+    private final EventJournal journal = EventJournal.shared();  // Binary record of every election event
+    private volatile IntConsumer leaderListener = winnerId -> { };  // Notified when the leader is learned
+    private final AtomicReference<RingLink> nextLink = new AtomicReference<>();  // Outbound link to successor in ring
+    private final AtomicReference<RingLink> prevLink = new AtomicReference<>();  // Outbound link to predecessor (bidirectional algorithms only)
+    private volatile int prevNodeId;                    // The ID of the predecessor in the ring
+    private volatile long layout;                       // Ring layout version of the last setNext/setFingers
+    private final AtomicReference<Fingers> fingers = new AtomicReference<>();  // Finger links (null until setFingers)
+    private final AtomicReference<ElectionState> state = new AtomicReference<>(ElectionState.INITIAL);  // Current election (lock-free)
+    private final AtomicReference<LeaderLease> leaderLease = new AtomicReference<>(LeaderLease.NONE);  // Cached leader for GetLeader
+    private volatile boolean coalescing = COALESCE;                    // Suppress candidates that cannot win (LCR)
+    private volatile long coalesceWindowMillis = COALESCE_WINDOW_MS;   // Merge window for coalescing (0 = none)
+    private final AtomicReference<MessageRequest> waitingCandidate = new AtomicReference<>();  // Candidate inside the merge window
+    private volatile NodeEndpoints advertised;         // Endpoints this node listens on (null = standard TCP port only)
+
+    /**
+     * The last leader this node learned, and until when (System.nanoTime) it may be reported as current.
+     */
+    private record LeaderLease(int leaderId, long epoch, long expiresAtNanos) {
+        static final LeaderLease NONE = new LeaderLease(0, 0, 0);
+    }
+
+    /**
+     * Finger links pushed by PeerRegister for one ring layout: links[k] reaches the
+     * node 2^k positions ahead (links[0] is unused, the successor link covers distance 1).
+     */
+    private record Fingers(long layout, int ringSize, RingLink[] links) { }
 
     /**
      * Constructor: Creates service implementation for the given node ID.
      */
     public NodeServiceImpl(int nodeId) {
+        this(nodeId, ForwardingMode.fromSystemProperty());
+    }
+
+    /**
+     * Constructor: Creates service implementation with an explicit forwarding mode.
+     */
+    public NodeServiceImpl(int nodeId, ForwardingMode forwardingMode) {
+        this(nodeId, forwardingMode, NodeChannels.tcp());
+    }
+
+    /**
+     * Constructor: Creates service implementation that reaches other nodes through the given channels
+     * (e.g. NodeChannels.inProcess(...) when many nodes share one JVM).
+     */
+    public NodeServiceImpl(int nodeId, ForwardingMode forwardingMode, NodeChannels channels) {
+        this(nodeId, forwardingMode, channels, ElectionAlgorithm.fromSystemProperty());
+    }
+
+    /**
+     * Constructor: Creates service implementation that runs the given election algorithm.
+     */
+    public NodeServiceImpl(int nodeId, ForwardingMode forwardingMode, NodeChannels channels, ElectionAlgorithm algorithm) {
+        this(nodeId, forwardingMode, channels, algorithm, ExecutionMode.fromSystemProperty());
+    }
+
+    /**
+     * Constructor: Creates service implementation whose triggered elections run on the given execution mode.
+     */
+    public NodeServiceImpl(int nodeId, ForwardingMode forwardingMode, NodeChannels channels, ElectionAlgorithm algorithm,
+                           ExecutionMode execution) {
+        this(nodeId, forwardingMode, new EndpointDirectory(channels, execution.executor()), algorithm, execution, "",
+                new MetricsInterceptor());
+    }
+
+    /**
+     * Constructor: Creates the member of one election group. The RPC interceptor
+     * may be shared by all groups of a node (see NodeGroups), and so may the channels,
+     * which should include an EndpointDirectory for the neighbours' endpoints.
+     */
+    NodeServiceImpl(int nodeId, ForwardingMode forwardingMode, NodeChannels channels, ElectionAlgorithm algorithm,
+                    ExecutionMode execution, String group, MetricsInterceptor rpc) {
         this.nodeId = nodeId;
+        this.group = group;
+        this.journalGroup = journal.group(group);
+        this.forwardingMode = forwardingMode;
+        this.execution = execution;
+        this.metrics = new NodeMetrics(rpc);
+        this.channels = channels.intercepted(metrics.rpc);  // Measure every outgoing hop
+        this.strategy = algorithm.create(this);
+    }
+
+    /**
+     * @return This node's ID
+     */
+    public int nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return Election group of this instance ("" = default group)
+     */
+    public String group() {
+        return group;
+    }
+
+    /**
+     * @return The ID of the current successor (0 until setNext has been called)
+     */
+    public int nextNodeId() {
+        RingLink link = nextLink.get();
+        return link == null ? 0 : link.targetId();
+    }
+
+    /**
+     * @return The ID of the current predecessor (0 until setPrev has been called)
+     */
+    public int prevNodeId() {
+        return prevNodeId;
+    }
+
+    /**
+     * Binds the service with the metrics interceptor in front of every method,
+     * so every server this node is added to measures its RPCs.
+     */
+    @Override
+    public ServerServiceDefinition bindService() {
+        return ServerInterceptors.intercept(NodeServiceGrpc.bindService(this), metrics.rpc);
+    }
+
+    /**
+     * @return Message counters for this node
+     */
+    public NodeMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * trace: Records in the event journal what this node did with a message.
+     */
+    void trace(EventJournal.Type type, EventJournal.Decision decision, MessageRequest request) {
+        journal.record(journalGroup, request.getEpoch(), type, decision, nodeId, request.getOrigin(), request.getMessage(),
+                request.getPhase(), request.getHop(), request.getDirectionValue());
+    }
+
+    /**
+     * setJournalGroup: Names the ring in this member's journal records (default: its group).
+     * RingSimulator --rings uses it to tell apart rings that all use the default group.
+     */
+    public void setJournalGroup(String name) {
+        this.journalGroup = journal.group(name);
+    }
+
+    /**
+     * Registers a callback that receives the winner's ID when this node learns the election result.
+     */
+    public void setLeaderListener(IntConsumer leaderListener) {
+        this.leaderListener = leaderListener;
+    }
+
+    /**
+     * advertise: Sets the endpoints this node listens on, sent to PeerRegister with
+     * every registration and heartbeat.
+     */
+    public void advertise(List<Endpoint> endpoints) {
+        this.advertised = endpoints.isEmpty() ? null : EndpointDirectory.toProto(nodeId, endpoints);
+    }
+
+    /**
+     * @return This node's endpoints as sent in heartbeats (null if none were advertised)
+     */
+    NodeEndpoints advertised() {
+        return advertised;
+    }
+
+    /**
+     * @return The RegisterNode request for this member: node ID, standard port, group and endpoints
+     */
+    public RegisterRequest registerRequest() {
+        RegisterRequest.Builder request = RegisterRequest.newBuilder()
+                .setNodeId(nodeId)
+                .setPort(50000 + nodeId)
+                .setGroup(group);
+        NodeEndpoints own = advertised;
+        if (own != null) request.addAllEndpoints(own.getEndpointsList());
+        return request.build();
+    }
+
+    /**
+     * learnPeers: Records the endpoints PeerRegister sent along with a link request,
+     * before any link to those nodes is opened.
+     */
+    private void learnPeers(MessageRequest request) {
+        for (NodeEndpoints peer : request.getPeersList()) {
+            channels.learn(peer.getNodeId(), Endpoint.parseAll(peer.getEndpointsList()));
+        }
+    }
+
+    /**
+     * @return " via <endpoint>" for log lines if the node advertised a usable endpoint,
+     *         " via local dispatch" for a node of the same NodeHost, else empty
+     */
+    private String via(RingLink link) {
+        if (link instanceof LocalRingLink) return " via local dispatch";
+        Endpoint best = Endpoint.cheapest(channels.endpoints(link.targetId()));
+        return best == null ? "" : " via " + best;
+    }
+
+    /**
+     * setCoalescing: Turns ELECTION coalescing on or off (default: lcr.coalesce, lcr.coalesce.windowMs).
+     * 
+     * @param windowMillis How long the first candidate of a burst waits for larger ones (0 = send at once)
+     */
+    public void setCoalescing(boolean enabled, long windowMillis) {
+        this.coalesceWindowMillis = Math.max(0, windowMillis);
+        this.coalescing = enabled;
     }
 
     /**
@@ -42,18 +299,12 @@ public class NodeServiceImpl extends NodeServiceGrpc.NodeServiceImplBase {
      */
     @Override
     public void setNext(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
-        this.nextNodeId = request.getMessage();
-        
-        // Create gRPC channel to the next node in the ring
-        // Uses 127.0.0.1 for explicit IPv4, port = 50000 + nextNodeId
-        this.nextNodeChannel = ManagedChannelBuilder
-                .forAddress("127.0.0.1", 50000 + nextNodeId)
-                .usePlaintext()  // No TLS for local testing
-                .build();
-        
-        // Create blocking stub for synchronous RPC calls to next node
-        this.nextNodeStub = NodeServiceGrpc.newBlockingStub(nextNodeChannel);
-        System.out.println("Node " + nodeId + ": Connected to next node " + nextNodeId);
+        int nextNodeId = request.getMessage();
+        learnPeers(request);
+        RingLink link = openLink(nextNodeId);
+        setNextLink(link);
+        layout = request.getLayout();  // Finger links of an older layout are no longer trusted
+        System.out.println("Node " + nodeId + ": Connected to next node " + nextNodeId + " (" + forwardingMode + " forwarding" + via(link) + ")");
         
         // Send acknowledgment back to PeerRegister
         responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
@@ -61,91 +312,471 @@ public class NodeServiceImpl extends NodeServiceGrpc.NodeServiceImplBase {
     }
 
     /**
-     * sendElection: Handles incoming ELECTION messages (core of LCR algorithm).
+     * setPrev: Called by PeerRegister to tell this node who its predecessor is.
+     * A link to the predecessor is only opened if the election algorithm sends
+     * messages counterclockwise; otherwise the ID is just recorded.
      * 
-     * LCR Logic:
-     * 1. If candidateId == myId: I've won! Declare leadership and announce
-     * 2. If candidateId > myId: Forward the message (larger ID might win)
-     * 3. If candidateId < myId: Drop the message (this ID can't win)
+     * @param request Contains the previous node's ID
+     * @param responseObserver Used to send acknowledgment back to PeerRegister
+     */
+    @Override
+    public void setPrev(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        int prevNodeId = request.getMessage();
+        learnPeers(request);
+        if (strategy.bidirectional()) {
+            RingLink link = openLink(prevNodeId);
+            RingLink previous = prevLink.getAndSet(link);
+            if (previous != null) previous.close();  // Release the old predecessor's channel
+            System.out.println("Node " + nodeId + ": Connected to previous node " + prevNodeId + " (" + forwardingMode + " forwarding" + via(link) + ")");
+        }
+        this.prevNodeId = prevNodeId;
+        
+        responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * setFingers: Called by PeerRegister to give this node its finger links, the
+     * nodes 2, 4, 8, ... positions ahead (fingers[0] is the successor, reached
+     * through the successor link). Links to nodes that were fingers before are kept.
+     * 
+     * @param request message = ring size, fingers = finger node IDs, layout = the layout they were computed for
+     * @param responseObserver Used to send acknowledgment back to PeerRegister
+     */
+    @Override
+    public void setFingers(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        learnPeers(request);
+        Map<Integer, RingLink> reusable = new HashMap<>();
+        Fingers previous = fingers.get();
+        if (previous != null) {
+            for (RingLink link : previous.links()) {
+                if (link != null) reusable.put(link.targetId(), link);
+            }
+        }
+        RingLink[] links = new RingLink[request.getFingersCount()];
+        for (int k = 1; k < links.length; k++) {
+            RingLink kept = reusable.remove(request.getFingers(k));
+            links[k] = kept != null ? kept : openLink(request.getFingers(k));
+        }
+        fingers.set(new Fingers(request.getLayout(), request.getMessage(), links));
+        layout = request.getLayout();
+        reusable.values().forEach(RingLink::close);  // Fingers that are no longer needed
+        
+        responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * openLink: Opens a link to a ring neighbour.
+     */
+    private RingLink openLink(int targetId) {
+        // A neighbour hosted by the same NodeHost gets the messages directly
+        RingLink local = channels.localLink(nodeId, targetId, group);
+        if (local != null) return local;
+
+        // Create gRPC channel to the neighbour
+        // (by default 127.0.0.1, port = 50000 + targetId)
+        ManagedChannel channel = channels.open(targetId);
+        
+        // Wrap the channel in a link matching the configured forwarding mode
+        return switch (forwardingMode) {
+            case STREAM -> new StreamingRingLink(nodeId, targetId, channel);
+            case ASYNC -> new AsyncRingLink(nodeId, targetId, channel);
+            case BLOCKING -> new BlockingRingLink(nodeId, targetId, channel);
+        };
+    }
+
+    /**
+     * setNextLink: Replaces the link to the successor and closes the previous one.
+     * Used by setNext, and directly by benchmarks that need a node without a network.
+     */
+    void setNextLink(RingLink link) {
+        RingLink previous = nextLink.getAndSet(link);
+        if (previous != null) previous.close();  // Release the old successor's channel
+    }
+
+    /**
+     * sendElection: Handles incoming ELECTION messages (core of the election).
+     * The configured ElectionStrategy decides what happens to the message
+     * (see LcrStrategy for the LCR rules).
      * 
      * @param request Contains the candidate ID circulating around the ring
      * @param responseObserver Used to send acknowledgment
      */
     @Override
     public void sendElection(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
-        int originId = request.getOrigin();
-        int candidateId = request.getMessage();
-        System.out.println("Node " + nodeId + ": Received ELECTION(candidateId=" + candidateId + ", originNode=" + originId + ")");
-        
-        // CASE 1: This is my own ID coming back - I'm the leader!
-        if (candidateId == nodeId) {
-            isLeader = true;
-            System.out.println("\n=== Node " + nodeId + " is LEADER! ===\n");
-            
-            // Send LEADER announcement around the ring once
-            if (nextNodeStub != null) {
-                System.out.println("Node " + nodeId + ": Sending LEADER(winnerId=" + nodeId + ") announcement");
-                nextNodeStub.sendLeader(MessageRequest.newBuilder()
-                        .setOrigin(nodeId)
-                        .setMessage(nodeId)
-                        .build());
-            }
-        } 
-        // CASE 2: Candidate ID is larger than mine - forward it
-        else if (candidateId > nodeId) {
-            System.out.println("Node " + nodeId + ": Forwarding ELECTION(candidateId=" + candidateId + ", originNode=" + originId + ") to next node " + nextNodeId);
-            if (nextNodeStub != null) {
-                nextNodeStub.sendElection(MessageRequest.newBuilder()
-                        .setOrigin(originId)
-                        .setMessage(candidateId)
-                        .build());
-            }
-        } 
-        // CASE 3: Candidate ID is smaller than mine - drop it
-        else {
-            System.out.println("Node " + nodeId + ": Dropped ELECTION(candidateId=" + candidateId + ", originNode=" + originId + ") - my ID is larger");
-            // Do nothing - message is not forwarded
-        }
+        handleElection(request);
         
         // Send acknowledgment back to sender
         responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
         responseObserver.onCompleted();
     }
 
+    /**
+     * handleElection: Passes one ELECTION message to the election strategy.
+     * Shared by the unary SendElection RPC and the RingStream link.
+     * 
+     * Epoch handling happens first:
+     * - A message from an older epoch is dropped right here (stale election)
+     * - A message from a newer epoch moves this node into that election; a node
+     *   woken up this way also sends its own candidacy, as LCR and HS require
+     */
+    void handleElection(MessageRequest request) {
+        long epoch = request.getEpoch();
+        metrics.electionReceived.increment();
+        
+        // Drop messages of an election that has been superseded
+        if (enterEpoch(epoch) == null) {
+            if (EventJournal.console()) {
+                System.out.println("Node " + nodeId + ": Dropped stale ELECTION(candidateId=" + request.getMessage() + ", epoch=" + epoch + ") - current epoch is " + state.get().epoch());
+            }
+            trace(EventJournal.Type.ELECTION, EventJournal.Decision.STALE, request);
+            metrics.electionStale.increment();
+            return;
+        }
+        
+        // The election algorithm decides whether to forward, reply, drop or win
+        strategy.onElection(request);
+        
+        // Take part in this election if I have not done so yet
+        sendCandidacy(epoch);
+    }
+
+    /**
+     * declareLeader: Called by the election strategy when this node has won the given epoch.
+     * Sends the LEADER announcement around the ring, once per epoch
+     * (duplicates are possible after a stream fallback, and HS probes arrive from both sides).
+     */
+    void declareLeader(long epoch) {
+        if (transition(epoch, s -> s.isLeader() ? null : s.asLeader(nodeId)) == null) return;
+        System.out.println("\n=== Node " + nodeId + " is LEADER! (epoch " + epoch + ") ===\n");
+        MessageRequest announcement = MessageRequest.newBuilder()
+                .setOrigin(nodeId)
+                .setMessage(nodeId)
+                .setEpoch(epoch)
+                .setGroup(group)
+                .build();
+        trace(EventJournal.Type.LEADER, EventJournal.Decision.ELECTED, announcement);
+        
+        Fingers table = fingers.get();
+        if (table != null && table.layout() == layout) {
+            // Announce over the finger links: this node is the root of a tree covering the whole ring
+            acceptLeader(announcement.toBuilder().setSpan(table.ringSize()).setLayout(table.layout()).build());
+            return;
+        }
+        
+        // Send LEADER announcement around the ring once
+        transition(epoch, ElectionState::withLeaderRelayed);
+        RingLink link = nextLink.get();
+        if (link != null) {
+            if (EventJournal.console()) {
+                System.out.println("Node " + nodeId + ": Sending LEADER(winnerId=" + nodeId + ") announcement");
+            }
+            metrics.leaderSent.increment();
+            link.sendLeader(announcement);
+        }
+    }
+
+    /**
+     * forwardCandidate: Sends an LCR ELECTION message clockwise - this node's own
+     * candidacy or a forwarded one. Used by LcrStrategy.
+     * 
+     * With coalescing on, a candidate that is not larger than one this node already
+     * sent in the epoch is suppressed: it cannot win, since the larger one beats it
+     * at the latest on the larger one's node. With a merge window the first candidate
+     * waits that long and larger ones arriving meanwhile take its place, so a burst
+     * leaves as one ELECTION for its largest candidate. The largest ID in the ring is
+     * never suppressed, so the leader is the same as without coalescing.
+     */
+    void forwardCandidate(MessageRequest request) {
+        if (!coalescing) {
+            sendCandidate(request);
+            return;
+        }
+        int candidateId = request.getMessage();
+        long epoch = request.getEpoch();
+        if (transition(epoch, s -> candidateId > s.maxForwarded() ? s.withMaxForwarded(candidateId) : null) == null) {
+            coalesce(request);  // A larger candidate already went (or is waiting to go) this way
+            return;
+        }
+        long window = coalesceWindowMillis;
+        if (window == 0) {
+            sendCandidate(request);
+            return;
+        }
+        while (true) {
+            MessageRequest waiting = waitingCandidate.get();
+            if (waiting != null && waiting.getEpoch() == epoch && waiting.getMessage() > candidateId) {
+                coalesce(request);  // Lost a race against a larger candidate of the same burst
+                return;
+            }
+            if (waitingCandidate.compareAndSet(waiting, request)) {
+                if (waiting != null && waiting.getEpoch() == epoch) {
+                    coalesce(waiting);  // Merged into this larger candidate
+                    return;
+                }
+                if (waiting != null) stale(waiting);  // Left over from an older epoch
+                execution.schedule(() -> sendWaitingCandidate(epoch), window);  // A new window, on its own timer
+                return;
+            }
+        }
+    }
+
+    /**
+     * sendWaitingCandidate: Ends the merge window of an epoch by sending the largest candidate it collected.
+     * A window opened meanwhile for a newer epoch has its own timer and is left alone.
+     */
+    private void sendWaitingCandidate(long epoch) {
+        MessageRequest request;
+        do {
+            request = waitingCandidate.get();
+            if (request == null || request.getEpoch() != epoch) return;
+        } while (!waitingCandidate.compareAndSet(request, null));
+        if (request.getEpoch() != state.get().epoch()) {
+            stale(request);
+            return;
+        }
+        sendCandidate(request);
+    }
+
+    /**
+     * stale: Records a waiting candidate dropped because its epoch is over.
+     */
+    private void stale(MessageRequest request) {
+        trace(EventJournal.Type.ELECTION, EventJournal.Decision.STALE, request);
+        metrics.electionStale.increment();
+    }
+
+    /**
+     * sendCandidate: Records and sends one LCR candidate to the successor.
+     */
+    private void sendCandidate(MessageRequest request) {
+        boolean own = request.getMessage() == nodeId;
+        trace(EventJournal.Type.ELECTION, own ? EventJournal.Decision.SENT : EventJournal.Decision.FORWARDED, request);
+        if (!own) metrics.electionForwarded.increment();
+        send(Direction.CLOCKWISE, request);
+    }
+
+    /**
+     * coalesce: Records a candidate that is not sent because a larger one was.
+     */
+    private void coalesce(MessageRequest request) {
+        if (EventJournal.console()) {
+            System.out.println("Node " + nodeId + ": Coalesced ELECTION(candidateId=" + request.getMessage() + ", epoch=" + request.getEpoch()
+                    + ") - a larger candidate was sent instead");
+        }
+        trace(EventJournal.Type.ELECTION, EventJournal.Decision.COALESCED, request);
+        metrics.electionCoalesced.increment();
+    }
+
+    /**
+     * send: Passes an ELECTION message to the successor (CLOCKWISE) or predecessor (COUNTERCLOCKWISE).
+     * Used by the election strategies.
+     */
+    void send(Direction direction, MessageRequest request) {
+        RingLink link = (direction == Direction.COUNTERCLOCKWISE ? prevLink : nextLink).get();
+        if (link == null) {
+            System.err.println("Node " + nodeId + ": Cannot send ELECTION " + direction + " - no link in that direction");
+            return;
+        }
+        metrics.electionSent.increment();
+        link.sendElection(request);
+    }
+
     /**
      * sendLeader: Handles the LEADER announcement message.
-     * The LEADER message circulates once around the ring so all nodes learn the result.
-     * The leaderAnnounced flag prevents infinite circulation.
+     * The LEADER message circulates once around the ring so all nodes learn the result,
+     * or spreads over the finger links when it carries a span.
+     * The per-epoch leaderAnnounced and leaderRelayed flags prevent infinite circulation.
      * 
      * @param request Contains the winner's ID
      * @param responseObserver Used to send acknowledgment
      */
     @Override
     public void sendLeader(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+        handleLeader(request);
+        
+        // Send acknowledgment
+        responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * handleLeader: Records a LEADER announcement and passes it on once.
+     * Shared by the unary SendLeader RPC and the RingStream link.
+     */
+    void handleLeader(MessageRequest request) {
+        metrics.leaderReceived.increment();
+        acceptLeader(request);
+    }
+
+    /**
+     * acceptLeader: Learns the leader of an announcement and relays it. Also used
+     * by the leader itself to start a finger announcement.
+     */
+    private void acceptLeader(MessageRequest request) {
         int winnerId = request.getMessage();
         int originId = request.getOrigin();
+        long epoch = request.getEpoch();
+
+        // Drop announcements of an election that has been superseded
+        if (enterEpoch(epoch) == null) {
+            if (EventJournal.console()) {
+                System.out.println("Node " + nodeId + ": Dropped stale LEADER(winnerId=" + winnerId + ", epoch=" + epoch + ")");
+            }
+            trace(EventJournal.Type.LEADER, EventJournal.Decision.STALE, request);
+            return;
+        }
         
-        // Only process this announcement once
-        if (!leaderAnnounced) {
-            leaderAnnounced = true;
-            System.out.println("Node " + nodeId + ": Received LEADER announcement (winnerId=" + winnerId + ", announcedBy=" + originId + ")");
-            System.out.println("Node " + nodeId + ": ✓ Node " + winnerId + " is the LEADER");
-            
-            // Forward the announcement to next node (unless I'm the leader)
-            // The leader node doesn't forward to prevent infinite loop
-            if (!isLeader && nextNodeStub != null) {
-                System.out.println("Node " + nodeId + ": Forwarding LEADER announcement to next node " + nextNodeId);
-                nextNodeStub.sendLeader(request);
+        // Only learn the leader once per epoch
+        ElectionState learned = transition(epoch, s -> s.leaderAnnounced() ? null : s.withLeader(winnerId));
+        if (learned != null) {
+            trace(EventJournal.Type.LEADER, EventJournal.Decision.LEARNED, request);
+            if (EventJournal.console()) {
+                System.out.println("Node " + nodeId + ": Received LEADER announcement (winnerId=" + winnerId + ", announcedBy=" + originId + ", epoch=" + epoch + ")");
             }
+            System.out.println("Node " + nodeId + ": ✓ Node " + winnerId + " is the LEADER");
+            long now = System.nanoTime();
+            metrics.electionLatency.record(now - learned.startedAtNanos());
+            renewLeaderLease(winnerId, epoch, now + LEADER_LEASE_MS * 1_000_000);
+            leaderListener.accept(winnerId);
         }
         
-        // Send acknowledgment
-        responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
+        if (request.getSpan() > 0) {
+            // Finger announcement: pass it on to this node's part of the tree, the first time only
+            if (learned != null) relayOverFingers(request);
+        } else {
+            relayAroundRing(request);
+        }
+    }
+
+    /**
+     * relayAroundRing: Forwards a ring-pass announcement to the successor, once per epoch.
+     * The node that started the pass (the leader, or a node whose finger links were
+     * out of date) has already relayed, so the pass stops after one full circle.
+     */
+    private void relayAroundRing(MessageRequest request) {
+        if (transition(request.getEpoch(), s -> s.leaderRelayed() ? null : s.withLeaderRelayed()) == null) return;
+        RingLink link = nextLink.get();
+        if (link != null) {
+            if (EventJournal.console()) {
+                System.out.println("Node " + nodeId + ": Forwarding LEADER announcement to next node " + link.targetId());
+            }
+            metrics.leaderSent.increment();
+            link.sendLeader(request);
+        }
+    }
+
+    /**
+     * relayOverFingers: Passes a finger announcement on to the part of the ring this node covers.
+     * 
+     * A node receiving span s covers itself and the s - 1 positions after it. It
+     * hands the far part of that range to the finger 2^k ahead (largest 2^k < s),
+     * halves the rest the same way, and ends with its successor. Every node is
+     * reached once and the tree is about log2(N) hops deep.
+     * Example, span 8: finger +4 covers 4..7, finger +2 covers 2..3, successor covers 1.
+     * 
+     * If this node's finger links are older than its last setNext (the ring changed
+     * since), or were built for another layout than the sender's, the tree may have
+     * a gap behind this node, so it starts a ring pass instead. Nodes that already
+     * know the leader still relay a ring pass, so it closes any gap.
+     */
+    private void relayOverFingers(MessageRequest request) {
+        Fingers table = fingers.get();
+        if (table == null || table.layout() != layout || table.layout() != request.getLayout()) {
+            metrics.leaderRingPasses.increment();
+            relayAroundRing(request.toBuilder().setSpan(0).build());
+            return;
+        }
+        int limit = request.getSpan();
+        for (int k = table.links().length - 1; k >= 0; k--) {
+            int distance = 1 << k;
+            if (distance >= limit) continue;
+            RingLink link = k == 0 ? nextLink.get() : table.links()[k];
+            if (link != null) {
+                MessageRequest part = request.toBuilder().setSpan(limit - distance).build();
+                metrics.leaderSent.increment();
+                if (forwardingMode == ForwardingMode.BLOCKING) {
+                    // A blocking send waits for the whole subtree; send the branches side by side
+                    execution.executor().execute(() -> link.sendLeader(part));
+                } else {
+                    link.sendLeader(part);
+                }
+            }
+            limit = distance;
+        }
+    }
+
+    /**
+     * getLeader: Answers with the cached leader. No network hop and no lock:
+     * the answer is built from one atomic read.
+     * 
+     * @param request Unused
+     * @param responseObserver Receives leader ID, its epoch and the remaining lease (0 = expired)
+     */
+    @Override
+    public void getLeader(MessageRequest request, StreamObserver<LeaderResponse> responseObserver) {
+        responseObserver.onNext(leaderResponse());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * getStats: Returns this node's counters and latency histograms,
+     * also rendered as Prometheus text.
+     * 
+     * @param request Unused
+     * @param responseObserver Receives the statistics
+     */
+    @Override
+    public void getStats(MessageRequest request, StreamObserver<StatsResponse> responseObserver) {
+        responseObserver.onNext(metrics.export(nodeId, group));
         responseObserver.onCompleted();
     }
 
     /**
-     * startElection: Initiates a new leader election from this node.
+     * @return The cached leader as a GetLeader answer
+     */
+    LeaderResponse leaderResponse() {
+        LeaderLease lease = leaderLease.get();
+        long remainingMillis = lease.leaderId() == 0 ? 0 : Math.max(0, (lease.expiresAtNanos() - System.nanoTime()) / 1_000_000);
+        return LeaderResponse.newBuilder()
+                .setLeaderId(lease.leaderId())
+                .setEpoch(lease.epoch())
+                .setLeaseMillis(remainingMillis)
+                .build();
+    }
+
+    /**
+     * renewLeaderLease: Caches a leader, or extends the lease of the cached one.
+     * A leader of an older epoch never replaces a newer one, and a lease is never shortened.
+     * 
+     * @param expiresAtNanos System.nanoTime() value until which the leader may be reported
+     */
+    void renewLeaderLease(int leaderId, long epoch, long expiresAtNanos) {
+        leaderLease.updateAndGet(current -> {
+            boolean newer = epoch > current.epoch();
+            boolean longer = epoch == current.epoch() && leaderId == current.leaderId()
+                    && expiresAtNanos - current.expiresAtNanos() > 0;
+            return newer || longer ? new LeaderLease(leaderId, epoch, expiresAtNanos) : current;
+        });
+    }
+
+    /**
+     * ringStream: Accepts the long-lived link opened by this node's predecessor.
+     * Each RingFrame is handled exactly like the matching unary RPC; acknowledgments
+     * are batched and sent back as cumulative RingAck messages.
+     * 
+     * @param responseObserver Stream of acknowledgments back to the predecessor
+     * @return Observer that receives the predecessor's frames
+     */
+    @Override
+    public StreamObserver<RingFrame> ringStream(StreamObserver<RingAck> responseObserver) {
+        return new RingStreamReceiver(this, responseObserver);
+    }
+
+    /**
+     * startElection: Initiates a new leader election from this node, in the
+     * epoch after the newest one this node has seen.
      * Sends ELECTION(myId) to the next node in the ring.
      * 
      * Called in two scenarios:
@@ -153,47 +784,107 @@ public class NodeServiceImpl extends NodeServiceGrpc.NodeServiceImplBase {
      * 2. Manually when user types "election" command (can trigger a new election)
      */
     public void startElection() {
+        startElection(state.get().epoch() + 1);
+    }
+
+    /**
+     * startElection: Takes part in the election with the given epoch.
+     * 
+     * If this node already moved on to a newer epoch, the request is ignored:
+     * concurrent elections collapse into the newest one.
+     * 
+     * @param epoch Election epoch (PeerRegister assigns one per broadcast)
+     */
+    public void startElection(long epoch) {
         System.out.println("\n==========================================================");
-        System.out.println("Node " + nodeId + ": Starting election - sending my ID as candidate");
+        System.out.println("Node " + nodeId + ": Starting election (epoch " + epoch + ") - sending my ID as candidate");
         System.out.println("==========================================================\n");
         
-        // Reset flags for new election
-        leaderAnnounced = false;
-        isLeader = false;
-        
-        if (nextNodeStub != null) {
-            // Send my ID as a candidate around the ring
-            System.out.println("Node " + nodeId + ": Sending ELECTION(candidateId=" + nodeId + ", originNode=" + nodeId + ") to next node " + nextNodeId);
-            nextNodeStub.sendElection(MessageRequest.newBuilder()
-                    .setOrigin(nodeId)
-                    .setMessage(nodeId)  // My ID is the candidate
-                    .build());
-        } else {
+        if (nextLink.get() == null) {
             // Ring not yet configured - cannot start election
             System.err.println("Node " + nodeId + ": Cannot start election - no next node");
+            return;
+        }
+        if (enterEpoch(epoch) == null || !sendCandidacy(epoch)) {
+            System.out.println("Node " + nodeId + ": Election epoch " + epoch + " already running or superseded (current epoch " + state.get().epoch() + ")");
         }
     }
 
+    /**
+     * sendCandidacy: Sends ELECTION(myId) in the given epoch, at most once per epoch.
+     * 
+     * @return True if the candidacy was sent by this call
+     */
+    private boolean sendCandidacy(long epoch) {
+        if (transition(epoch, s -> s.candidacySent() ? null : s.withCandidacy()) == null) return false;
+        strategy.start(epoch);
+        return true;
+    }
+
+    /**
+     * enterEpoch: Moves this node to the given epoch if it is newer than the current one.
+     * 
+     * @return The state for that epoch, or null if the epoch is older than the current one
+     */
+    private ElectionState enterEpoch(long epoch) {
+        while (true) {
+            ElectionState current = state.get();
+            if (epoch < current.epoch()) return null;
+            if (epoch == current.epoch()) return current;
+            ElectionState next = ElectionState.begin(epoch);
+            if (state.compareAndSet(current, next)) return next;
+        }
+    }
+
+    /**
+     * transition: Applies a state change, but only while the node is still in the given epoch.
+     * 
+     * @param change Returns the new state, or null if the change does not apply
+     * @return The new state, or null if nothing changed
+     */
+    private ElectionState transition(long epoch, UnaryOperator<ElectionState> change) {
+        while (true) {
+            ElectionState current = state.get();
+            if (current.epoch() != epoch) return null;
+            ElectionState next = change.apply(current);
+            if (next == null) return null;
+            if (state.compareAndSet(current, next)) return next;
+        }
+    }
+
+    /**
+     * @return Snapshot of this node's current election state
+     */
+    public ElectionState electionState() {
+        return state.get();
+    }
+
     /**
      * TriggerElection: Called by PeerRegister to make this node start election.
      * This is used when one node initiates election and PeerRegister broadcasts to all nodes.
      * 
-     * @param request Contains trigger message (not used)
+     * @param request Carries the election epoch chosen by PeerRegister (0 = pick the next local epoch)
      * @param responseObserver Used to send acknowledgment
      */
     @Override
     public void triggerElection(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
-        System.out.println("Node " + nodeId + ": ⚡ Received election trigger from PeerRegister - will participate in election");
+        long epoch = request.getEpoch();
+        System.out.println("Node " + nodeId + ": ⚡ Received election trigger from PeerRegister (epoch " + epoch + ") - will participate in election");
+        trace(EventJournal.Type.TRIGGER, EventJournal.Decision.ACCEPTED, request);
         
-        // Start election in a separate thread to avoid blocking the RPC
-        new Thread(() -> {
+        // Start the election after a small stagger, so not all nodes send at the exact same time.
+        // The delay is a timer entry, not a sleeping thread; the start itself runs on the execution mode's threads
+        execution.schedule(() -> {
             try {
-                Thread.sleep(100); // Small stagger to avoid all nodes sending at exact same time
-                startElection();
+                if (epoch > 0) {
+                    startElection(epoch);
+                } else {
+                    startElection();
+                }
             } catch (Exception e) {
                 System.err.println("Node " + nodeId + ": Failed to start election: " + e.getMessage());
             }
-        }).start();
+        }, TRIGGER_STAGGER_MS);
         
         // Send acknowledgment
         responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
@@ -201,10 +892,20 @@ public class NodeServiceImpl extends NodeServiceGrpc.NodeServiceImplBase {
     }
 
     /**
-     * shutdown: Cleanly closes the gRPC channel to the next node.
+     * shutdown: Cleanly closes the links to the next node, the previous node and the fingers.
      * Called when the node is shutting down.
      */
     public void shutdown() {
-        if (nextNodeChannel != null) nextNodeChannel.shutdown();
+        waitingCandidate.set(null);
+        RingLink link = nextLink.getAndSet(null);
+        if (link != null) link.close();
+        RingLink prev = prevLink.getAndSet(null);
+        if (prev != null) prev.close();
+        Fingers table = fingers.getAndSet(null);
+        if (table != null) {
+            for (RingLink finger : table.links()) {
+                if (finger != null) finger.close();
+            }
+        }
     }
 }
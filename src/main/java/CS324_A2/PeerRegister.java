@@ -1,18 +1,34 @@
 package CS324_A2;
 
+import GeorgeFiji.NodeProto.HeartbeatResponse;
+import GeorgeFiji.NodeProto.LeaderResponse;
 import GeorgeFiji.NodeProto.MessageRequest;
+import GeorgeFiji.NodeProto.NodeEndpoints;
 import GeorgeFiji.NodeProto.RegisterRequest;
+import GeorgeFiji.NodeProto.StatsResponse;
 import GeorgeFiji.NodeProto.MessageResponse;
 import GeorgeFiji.PeerRegisterServiceGrpc;
-import GeorgeFiji.NodeServiceGrpc;
-import io.grpc.Server;
-import io.grpc.ServerBuilder;
+import io.grpc.BindableService;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * PeerRegister manages node registration and ring topology construction.
@@ -23,167 +39,561 @@ import java.util.List;
  * 3. Automatically configure the ring topology when nodes join
  * 4. Connect each node to its successor (unidirectional ring)
  * 
- * The ring is formed based on registration order, not node IDs.
+ * By default the ring is formed based on registration order, not node IDs.
  * Example: If nodes register as 5, 11, 2, 7, the ring is: 5→11→2→7→5
+ * 
+ * Joins are spliced into the existing ring: only the new node and its
+ * predecessor receive setNext (and their successors setPrev), so a join costs
+ * 4 RPCs regardless of ring size.
+ * 
+ * A TopologyPolicy can instead keep the ring sorted by node ID (SORTED), or
+ * re-sort it in the background (RELAYOUT), which minimises LCR's message count.
+ * ringStats() reports the ELECTION message count the current layout implies.
+ * 
+ * Nodes that send heartbeats hold a lease. When a lease runs out the node is
+ * evicted and the ring is repaired by re-pointing only its predecessor. A new
+ * election is started (by triggering a single node) only if the dead node was
+ * the leader or no leader had been reported for the latest election.
+ * 
+ * The leader reported in heartbeats holds a leader lease of LEADER_LEASE_MS
+ * that only its own heartbeats renew. GetLeader answers from it, and every
+ * heartbeat response hands it on to the nodes' caches.
+ * 
+ * One registry serves any number of election groups. Each group is an
+ * independent ring with its own leader, kept in a RingGroup and selected by
+ * the group field of every request ("" = default group). Groups are created
+ * on first registration and locked separately, so activity in one group never
+ * blocks another. The methods without a group argument act on the default group.
+ * 
+ * Membership is recorded in a RegistryLog (snapshot plus append-only log). A
+ * restarted PeerRegister restores every ring from it in milliseconds without
+ * re-pushing setNext; the restored links are checked lazily by the nodes'
+ * heartbeats, and a node that registers again is re-linked in place. Nodes
+ * unknown to the registry (no log, or evicted) register again by themselves
+ * when a heartbeat is answered with ack 0.
+ * 
+ * A launcher that starts many nodes registers them all with one RegisterNodes
+ * stream; the ring is linked in one pass when the stream completes.
+ * 
+ * Optionally (lcr.fingers) every member also gets finger links to the nodes
+ * 2^k positions ahead, over which the LEADER announcement spreads in about
+ * log2(N) hops instead of N.
+ * 
+ * Nodes may advertise endpoints other than their TCP port (a Unix domain
+ * socket, an in-process name; see Endpoint). The registry reaches a node over
+ * the cheapest of them it can use and passes them on with every link request,
+ * so the nodes link to each other the same way. Endpoints are not in the
+ * registry log: after a restart they are learned again from the heartbeats.
  */
-public class PeerRegister extends PeerRegisterServiceGrpc.PeerRegisterServiceImplBase {
-    // List of node IDs in registration order (forms the ring sequence)
-    private final List<Integer> registeredNodes = new ArrayList<>();
+public class PeerRegister implements PeerRegisterServiceGrpc.AsyncService, BindableService {
+    // Per-node deadline for a triggerElection call during a broadcast, and for the link calls
+    // (setNext/setPrev/setFingers) made while a group's lock is held
+    static final long BROADCAST_DEADLINE_MS = Long.getLong("lcr.broadcast.deadlineMs", 2000);
+    // RELAYOUT: quiet period after the last membership change before re-sorting
+    static final long RELAYOUT_DELAY_MS = Long.getLong("lcr.topology.relayoutDelayMs", 500);
+    // A node that has not sent a heartbeat for this long is considered dead. About 20 heartbeat
+    // intervals, so a GC pause or a busy registry does not evict live nodes and restart elections
+    private static final long LEASE_TIMEOUT_MS = Long.getLong("lcr.lease.timeoutMs", 3000);
+    // Finger links: quiet period after the last membership change before they are pushed again
+    static final long FINGER_DELAY_MS = Long.getLong("lcr.fingers.refreshDelayMs", 200);
+    // Lease value of a node that has not sent its first heartbeat (never expires)
+    static final long NO_LEASE = Long.MAX_VALUE;
+    // Members restored from the registry log have this long to send their first heartbeat
+    static final long RESTORE_GRACE_MS = Long.getLong("lcr.registry.restoreGraceMs", 3000);
+    // Name of the group used by requests without a group
+    public static final String DEFAULT_GROUP = "";
+    
+    // Election groups by name, each with its own ring
+    private final Map<String, RingGroup> groups = new ConcurrentHashMap<>();
+    // Number of groups each node is a member of (its pooled channel is closed at 0)
+    private final Map<Integer, Integer> memberships = new ConcurrentHashMap<>();
+    // Where joining nodes are placed
+    private final TopologyPolicy policy;
+    // Endpoints the nodes advertised; falls back to TCP (or in-process in RingSimulator)
+    private final EndpointDirectory directory;
+    // Reusable channels to registered nodes, opened through the directory
+    private final ChannelPool channelPool;
+    // Times the delayed RELAYOUT passes, finger refreshes and the lease sweep; runs no RPCs itself
+    private final ScheduledExecutorService scheduler;
+    // Threads that run the repairs, relayouts and finger pushes (blocking link RPCs)
+    private final ExecutionMode execution = ExecutionMode.fromSystemProperty();
+    // RPC latency on both ends (registry handlers and calls to nodes)
+    private final MetricsInterceptor rpcMetrics = new MetricsInterceptor();
+    // Time from receiving RegisterNode (or the start of a RegisterNodes stream) until the node is linked into the ring
+    private final LatencyHistogram joinLatency = new LatencyHistogram();
+    // Nodes removed because their lease ran out
+    private final LongAdder evictions = new LongAdder();
+    // Elections started by the registry (broadcasts and single-node re-elections)
+    private final LongAdder electionsStarted = new LongAdder();
+    // Durable record of every group's ring order
+    private final RegistryLog log;
+    // True if members get finger links for a log-depth LEADER announcement
+    private volatile boolean fingers = Boolean.getBoolean("lcr.fingers");
+
+    /**
+     * Ring statistics for the current layout.
+     * 
+     * @param nodes            Ring size
+     * @param policy           Active topology policy
+     * @param electionMessages ELECTION messages one full LCR election costs on this layout
+     *                         (every node starting), counted as hops
+     * @param bestCase         Cost on an ascending ring: 2N - 1
+     * @param worstCase        Cost on a descending ring: N(N + 1) / 2
+     */
+    public record RingStats(int nodes, TopologyPolicy policy, long electionMessages, long bestCase, long worstCase) {
+        @Override
+        public String toString() {
+            return "Ring stats: " + nodes + " nodes, policy " + policy + ", LCR election cost "
+                    + electionMessages + " ELECTION messages (best " + bestCase + ", worst " + worstCase + ")";
+        }
+    }
+
+    /**
+     * Constructor: PeerRegister that reaches nodes over TCP (127.0.0.1, port 50000 + nodeId),
+     * with its membership in the configured registry log.
+     */
+    public PeerRegister() {
+        this(NodeChannels.tcp(), TopologyPolicy.fromSystemProperty(), RegistryLog.fromSystemProperty());
+    }
+
+    /**
+     * Constructor: PeerRegister that reaches nodes through the given channels.
+     */
+    public PeerRegister(NodeChannels channels) {
+        this(channels, TopologyPolicy.fromSystemProperty());
+    }
+
+    /**
+     * Constructor: PeerRegister with an explicit topology policy, membership in memory only.
+     */
+    public PeerRegister(NodeChannels channels, TopologyPolicy policy) {
+        this(channels, policy, RegistryLog.disabled());
+    }
+
+    /**
+     * Constructor: PeerRegister that records membership in the given log and
+     * restores the rings the log holds.
+     */
+    public PeerRegister(NodeChannels channels, TopologyPolicy policy, RegistryLog log) {
+        this.log = log;
+        this.directory = new EndpointDirectory(channels, execution.executor());
+        this.channelPool = new ChannelPool(directory.intercepted(rpcMetrics));
+        this.policy = policy;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "peer-register-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        long sweepPeriod = Math.max(1, LEASE_TIMEOUT_MS / 4);
+        scheduler.scheduleWithFixedDelay(this::sweepLeases, sweepPeriod, sweepPeriod, TimeUnit.MILLISECONDS);
+        restore();
+    }
+
+    /**
+     * restore: Rebuilds every group recorded in the log. No node is contacted.
+     */
+    private void restore() {
+        long start = System.nanoTime();
+        Map<String, List<Integer>> rings = log.recover();
+        if (rings.isEmpty()) return;
+        int nodes = 0;
+        for (Map.Entry<String, List<Integer>> ring : rings.entrySet()) {
+            group(ring.getKey()).restore(ring.getValue());
+            nodes += ring.getValue().size();
+        }
+        System.out.printf("PeerRegister: restored %d nodes in %d group(s) from %s in %.2f ms%n",
+                nodes, rings.size(), log.directory(), (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Binds the service with the metrics interceptor in front of every method.
+     */
+    @Override
+    public ServerServiceDefinition bindService() {
+        return ServerInterceptors.intercept(PeerRegisterServiceGrpc.bindService(this), rpcMetrics);
+    }
+
+    /**
+     * Closes every pooled channel. Call when the registry shuts down.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        channelPool.close();
+        log.close();
+    }
+
+    /**
+     * @return The named group, created empty if it does not exist yet
+     */
+    public RingGroup group(String name) {
+        return groups.computeIfAbsent(name, n -> new RingGroup(n, this));
+    }
+
+    /**
+     * @return Names of all groups
+     */
+    public List<String> groupNames() {
+        return new ArrayList<>(groups.keySet());
+    }
+
+    TopologyPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Turns finger links on or off (default: the "lcr.fingers" system property).
+     * Takes effect at the next membership change, or at refreshFingers().
+     */
+    public PeerRegister fingers(boolean enabled) {
+        this.fingers = enabled;
+        return this;
+    }
+
+    boolean fingers() {
+        return fingers;
+    }
+
+    /**
+     * schedule: Runs a task on the executor after a delay. The scheduler thread only times
+     * it, so link RPCs of one group never hold up the sweep or another group's tasks.
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return scheduler.schedule(() -> execution.executor().execute(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return The executor for a group's blocking work (evictions, concurrent link calls)
+     */
+    Executor executor() {
+        return execution.executor();
+    }
+
+    RegistryLog log() {
+        return log;
+    }
+
+    /**
+     * @return Pooled channel to a node, shared by all groups
+     */
+    ManagedChannel channel(int nodeId) {
+        return channelPool.get(nodeId);
+    }
+
+    /**
+     * learn: Records the endpoints a node advertised. If they changed, the pooled
+     * channel to the node is closed, so the next call uses the new cheapest endpoint.
+     */
+    void learn(int nodeId, List<String> endpoints) {
+        if (endpoints.isEmpty()) return;
+        if (directory.learn(nodeId, Endpoint.parseAll(endpoints))) channelPool.evict(nodeId);
+    }
+
+    /**
+     * @return The node's advertised endpoints for a link request, or null if it advertised none
+     */
+    NodeEndpoints peer(int nodeId) {
+        return directory.peer(nodeId);
+    }
+
+    /**
+     * joined / left: Track how many groups a node is in; its channel is closed when it leaves the last one.
+     */
+    void joined(int nodeId) {
+        memberships.merge(nodeId, 1, Integer::sum);
+    }
+
+    void left(int nodeId) {
+        if (memberships.computeIfPresent(nodeId, (id, count) -> count > 1 ? count - 1 : null) == null) {
+            channelPool.evict(nodeId);
+            directory.forget(nodeId);
+        }
+    }
+
+    void electionStarted() {
+        electionsStarted.increment();
+    }
+
+    void evicted() {
+        evictions.increment();
+    }
+
+    /**
+     * @return Node IDs of the default group in current ring order
+     */
+    public List<Integer> ringOrder() {
+        return group(DEFAULT_GROUP).ringOrder();
+    }
+
+    /**
+     * @return Ring statistics of the default group (see RingGroup.ringStats)
+     */
+    public RingStats ringStats() {
+        return group(DEFAULT_GROUP).ringStats();
+    }
 
     /**
      * registerNode: Handles node registration requests.
      * 
      * Process:
-     * 1. Validate that node ID is unique
-     * 2. Add node to registration list
-     * 3. If >= 2 nodes are registered, reconfigure the ring topology
+     * 1. Add node to the requested group's registration list
+     * 2. If >= 2 nodes are registered, splice the new node into the ring
      * 
-     * The ring is rebuilt every time a new node joins to include the new member.
+     * A node that is already a member (restarted, or registering again after a
+     * registry restart) keeps its place and is only re-linked to its neighbours.
      * 
-     * @param request Contains the node's ID and port
+     * @param request Contains the node's ID, port and group
      * @param responseObserver Used to send acknowledgment or error
      */
     @Override
     public void registerNode(RegisterRequest request, StreamObserver<MessageResponse> responseObserver) {
-        int nodeId = request.getNodeId();
+        long start = System.nanoTime();
+        RingGroup group = group(request.getGroup());
+        learn(request.getNodeId(), request.getEndpointsList());
         
-        // Synchronize to prevent race conditions during registration
-        synchronized (this) {
-            // Check if node ID is already registered
-            if (registeredNodes.contains(nodeId)) {
-                System.out.println("Node " + nodeId + " is already registered");
-                responseObserver.onError(new Exception("Node already registered"));
-                return;
-            }
-            
-            // Add new node to the registration list (in order of arrival)
-            registeredNodes.add(nodeId);
-            System.out.println("Registered Node " + nodeId + ". Total nodes: " + registeredNodes.size());
+        // The group's lock prevents race conditions during registration
+        group.lock().lock();
+        try {
+            // Add the node at the position the policy picks, unless it is already a member
+            boolean joined = group.add(request.getNodeId());
             
             // Send acknowledgment to the registering node
             responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
             responseObserver.onCompleted();
             
-            // Configure ring if we have at least 2 nodes
-            if (registeredNodes.size() >= 2) {
-                setupRingTopology();
+            if (joined) {
+                // Link the new node into the ring (needs at least 2 nodes)
+                group.spliceIn(List.of(request.getNodeId()));
+            } else {
+                group.relink(request.getNodeId());
+            }
+        } finally {
+            group.lock().unlock();
+        }
+        joinLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * registerNodes: Handles a stream of registrations from one client (e.g. NodeLauncher).
+     *
+     * Requests are only collected while the stream is open. When the client
+     * completes it, each group links all of its new nodes in a single pass
+     * (RingGroup.registerNodes) instead of one splice per node; nodes that were
+     * already members are re-linked in place, as with RegisterNode. The one
+     * response is sent after linking, so ack = 1 means every node has its successor.
+     *
+     * @param responseObserver Receives ack = 1 once the rings are linked
+     * @return Observer for the client's RegisterRequests
+     */
+    @Override
+    public StreamObserver<RegisterRequest> registerNodes(StreamObserver<MessageResponse> responseObserver) {
+        // gRPC delivers a call's messages one at a time, so no locking is needed here
+        Map<String, List<Integer>> batches = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(RegisterRequest request) {
+                learn(request.getNodeId(), request.getEndpointsList());
+                batches.computeIfAbsent(request.getGroup(), g -> new ArrayList<>()).add(request.getNodeId());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // Nothing was linked yet; the client registers the nodes again
+                System.err.println("PeerRegister: registration stream failed after " + batches.values().stream()
+                        .mapToInt(List::size).sum() + " nodes: " + t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                int added = 0;
+                for (Map.Entry<String, List<Integer>> batch : batches.entrySet()) {
+                    RingGroup group = group(batch.getKey());
+                    group.lock().lock();
+                    try {
+                        Set<Integer> joined = new HashSet<>(group.registerNodes(batch.getValue()));
+                        for (int nodeId : new LinkedHashSet<>(batch.getValue())) {
+                            if (!joined.contains(nodeId)) group.relink(nodeId);
+                        }
+                        added += joined.size();
+                    } finally {
+                        group.lock().unlock();
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                for (int i = 0; i < added; i++) joinLatency.record(elapsed);
+                responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
+                responseObserver.onCompleted();
             }
+        };
+    }
+
+    /**
+     * registerNodes: Registers several nodes at once in the default group
+     * (see RingGroup.registerNodes).
+     */
+    public List<Integer> registerNodes(List<Integer> nodeIds) {
+        return group(DEFAULT_GROUP).registerNodes(nodeIds);
+    }
+
+    /**
+     * refreshFingers: Pushes finger links for the default group's current layout now,
+     * instead of waiting for the refresh that follows a membership change.
+     * 
+     * @return Number of nodes updated
+     */
+    public int refreshFingers() {
+        return group(DEFAULT_GROUP).refreshFingers();
+    }
+
+    /**
+     * relayoutNow: Re-sorts the default group's ring by ascending node ID.
+     * 
+     * @return Number of setNext calls issued
+     */
+    public int relayoutNow() {
+        return group(DEFAULT_GROUP).relayoutNow();
+    }
+
+    /**
+     * heartbeat: Renews a node's lease in its group and records the leader it knows.
+     * 
+     * @param request origin = node ID, message = leader of its current epoch (0 if unknown),
+     *                epoch = that epoch, successor = its successor, group = the group the lease is for,
+     *                peers = the node's own endpoints (if it advertised any)
+     * @param responseObserver ack = 1 if the node is registered in the group, 0 if PeerRegister
+     *                         does not know it, plus the group's current leader and lease
+     */
+    @Override
+    public void heartbeat(MessageRequest request, StreamObserver<HeartbeatResponse> responseObserver) {
+        RingGroup group = groups.get(request.getGroup());
+        if (request.getPeersCount() > 0 && directory.endpoints(request.getOrigin()).isEmpty()) {
+            // First heartbeat since a restart: endpoints are not in the registry log
+            learn(request.getOrigin(), request.getPeers(0).getEndpointsList());
         }
+        boolean known = group != null && group.heartbeat(request.getOrigin(), request.getMessage(), request.getEpoch(),
+                request.getSuccessor());
+        responseObserver.onNext(HeartbeatResponse.newBuilder()
+                .setAck(known ? 1 : 0)
+                .setLeader(group != null ? group.leaderResponse() : LeaderResponse.getDefaultInstance())
+                .build());
+        responseObserver.onCompleted();
     }
 
     /**
-     * setupRingTopology: Configures the unidirectional ring topology.
+     * getLeader: Answers with the group's leader known from heartbeats, without contacting any node.
      * 
-     * Creates connections: Node[i] → Node[(i+1) % N]
-     * The modulo operator ensures the last node connects back to the first node,
-     * forming a closed ring.
+     * @param request group = the group to ask about
+     * @param responseObserver Receives leader ID, its epoch and the remaining lease (0 = expired or unknown group)
+     */
+    @Override
+    public void getLeader(MessageRequest request, StreamObserver<LeaderResponse> responseObserver) {
+        RingGroup group = groups.get(request.getGroup());
+        responseObserver.onNext(group != null ? group.leaderResponse() : LeaderResponse.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * getStats: Returns registry counters, the requested group's ring statistics,
+     * join latency and RPC latencies, also rendered as Prometheus text.
      * 
-     * Example with 4 nodes (IDs: 5, 11, 2, 7 in registration order):
-     *   5 → 11 → 2 → 7 → 5 (back to start)
+     * @param request group = the group whose ring is reported (an unknown group reports an empty ring)
+     * @param responseObserver Receives the statistics
+     */
+    @Override
+    public void getStats(MessageRequest request, StreamObserver<StatsResponse> responseObserver) {
+        RingGroup group = groups.get(request.getGroup());
+        if (group == null) {
+            // Unknown group: report an empty ring without adding the group
+            group = new RingGroup(request.getGroup(), this);
+        }
+        RingStats ring = group.ringStats();
+        RingGroup.Leader current = group.leader();
+        responseObserver.onNext(new StatsExport(group.name().isEmpty() ? "" : StatsExport.label("group", group.name()))
+                .gauge("lcr_registry_groups", "Election groups", groups.size())
+                .gauge("lcr_registry_member_nodes", "Distinct nodes in any group", memberships.size())
+                .gauge("lcr_registry_nodes", "Registered nodes", ring.nodes())
+                .gauge("lcr_registry_ring_election_messages", "ELECTION messages one LCR election costs on the current layout", ring.electionMessages())
+                .gauge("lcr_registry_ring_election_messages_best", "LCR cost on an ascending ring of this size", ring.bestCase())
+                .gauge("lcr_registry_ring_election_messages_worst", "LCR cost on a descending ring of this size", ring.worstCase())
+                .gauge("lcr_registry_leader", "Leader known from heartbeats (0 = none)", current.nodeId())
+                .gauge("lcr_registry_leader_epoch", "Epoch the leader won", current.epoch())
+                .gauge("lcr_registry_unverified_links", "Restored members whose links no heartbeat has checked yet", group.unverified())
+                .gauge("lcr_registry_pooled_channels", "Open pooled channels to nodes", channelPool.size())
+                .counter("lcr_registry_evictions_total", "Nodes removed after their lease ran out", evictions.sum())
+                .counter("lcr_registry_elections_started_total", "Elections started by the registry", electionsStarted.sum())
+                .latency("lcr_registry_join_latency_seconds", "RegisterNode received until the node is linked into the ring", joinLatency)
+                .latencies("lcr_rpc_server_seconds", "Server-side handling time per RPC", rpcMetrics.serverLatency())
+                .latencies("lcr_rpc_client_seconds", "Round trip per unary RPC to a node", rpcMetrics.clientLatency())
+                .counters("lcr_rpc_client_failures_total", "Unary RPCs to nodes that ended with an error status", rpcMetrics.clientFailures())
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * sweepLeases: Finds the nodes whose lease has run out, group by group. Runs periodically
+     * on the scheduler thread; each group evicts its nodes on the executor (see RingGroup.sweepLeases),
+     * so a hung neighbour in one group delays neither the sweep nor the other groups.
+     */
+    private void sweepLeases() {
+        long cutoff = System.currentTimeMillis() - LEASE_TIMEOUT_MS;
+        for (RingGroup group : groups.values()) {
+            group.sweepLeases(cutoff);
+        }
+    }
+
+    /**
+     * removeNode: Removes a node from every group it is in and repairs each ring around it
+     * (see RingGroup.removeNode).
      * 
-     * Each node is told who its successor is via the setNext() RPC call.
+     * @param nodeId ID of the node that left or died
+     * @return True if the node was registered in any group
      */
-    private void setupRingTopology() {
-        System.out.println("Setting up ring topology for " + registeredNodes.size() + " nodes...");
-        
-        // Loop through all registered nodes
-        for (int i = 0; i < registeredNodes.size(); i++) {
-            int currentNode = registeredNodes.get(i);
-            // Calculate next node using modulo for circular topology
-            int nextNode = registeredNodes.get((i + 1) % registeredNodes.size());
-            
-            try {
-                // Create temporary channel to the current node
-                ManagedChannel channel = ManagedChannelBuilder
-                        .forAddress("localhost", 50000 + currentNode)
-                        .usePlaintext()
-                        .build();
-                
-                // Create stub to call the current node's setNext() method
-                NodeServiceGrpc.NodeServiceBlockingStub stub = NodeServiceGrpc.newBlockingStub(channel);
-                
-                // Build request containing the next node's ID
-                MessageRequest request = MessageRequest.newBuilder()
-                        .setOrigin(0)           // Origin=0 indicates PeerRegister
-                        .setMessage(nextNode)   // Tell current node who its successor is
-                        .build();
-                
-                // Call setNext() on the current node
-                stub.setNext(request);
-                System.out.println("Connected Node " + currentNode + " -> Node " + nextNode);
-                
-                // Close the temporary channel
-                channel.shutdown();
-            } catch (Exception e) {
-                System.err.println("Failed to connect Node " + currentNode + " to Node " + nextNode + ": " + e.getMessage());
-            }
+    public boolean removeNode(int nodeId) {
+        boolean removed = false;
+        for (RingGroup group : groups.values()) {
+            removed |= group.removeNode(nodeId);
         }
-        System.out.println("Ring topology complete!");
+        return removed;
     }
 
     /**
      * broadcastElectionStart: Called when a node initiates election.
-     * Triggers ALL registered nodes to start election concurrently.
+     * Triggers ALL nodes of the request's group to start election concurrently
+     * (see RingGroup.broadcastElectionStart).
      * 
-     * @param request Contains the originating node ID
-     * @param responseObserver Used to send acknowledgment
+     * @param request Contains the originating node ID and the group
+     * @param responseObserver Used to send the aggregated result
      */
     @Override
     public void broadcastElectionStart(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
-        int originNode = request.getOrigin();
-        System.out.println("\n=== PeerRegister: Broadcasting election start to all " + registeredNodes.size() + " nodes ===");
-        System.out.println("    (initiated by Node " + originNode + ")\n");
-        
-        // Trigger election on ALL registered nodes
-        for (int nodeId : registeredNodes) {
-            try {
-                // Create temporary channel to the node
-                ManagedChannel channel = ManagedChannelBuilder
-                        .forAddress("127.0.0.1", 50000 + nodeId)
-                        .usePlaintext()
-                        .build();
-                
-                // Create stub to call the node's triggerElection() method
-                NodeServiceGrpc.NodeServiceBlockingStub stub = NodeServiceGrpc.newBlockingStub(channel);
-                
-                // Call triggerElection() on the node
-                stub.triggerElection(MessageRequest.newBuilder()
-                        .setOrigin(0)  // Origin=0 indicates PeerRegister
-                        .setMessage(0)
-                        .build());
-                
-                System.out.println("PeerRegister: Triggered election on Node " + nodeId);
-                
-                // Close the temporary channel
-                channel.shutdown();
-            } catch (Exception e) {
-                System.err.println("PeerRegister: Failed to trigger election on Node " + nodeId + ": " + e.getMessage());
-            }
-        }
-        
-        System.out.println("\n=== PeerRegister: Election broadcast complete ===\n");
-        
-        // Send acknowledgment
-        responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
-        responseObserver.onCompleted();
+        group(request.getGroup()).broadcastElectionStart(request.getOrigin(), responseObserver);
     }
 
     /**
      * Main entry point: Starts the PeerRegister gRPC server.
      * 
-     * The server listens on port 50099 for node registrations.
+     * The server listens on port 50099 for node registrations
+     * (or on lcr.registry.endpoint, e.g. a Unix domain socket; see Endpoint).
      * This must be started BEFORE any nodes are launched.
      * 
      * Usage: java CS324_A2.PeerRegister
      */
     public static void main(String[] args) throws IOException, InterruptedException {
-        // Create and start gRPC server on port 50099
-        Server server = ServerBuilder.forPort(50099)
-                .addService(new PeerRegister())  // Register the service
+        // Create and start gRPC server on port 50099, with handlers on the configured
+        // threads (virtual by default: linking a node blocks the handler on setNext calls)
+        ExecutionMode execution = ExecutionMode.fromSystemProperty();
+        Endpoint endpoint = Endpoint.registry();
+        PeerRegister registry = new PeerRegister();  // Restores the rings of the registry log, if any
+        Server server = endpoint.serverBuilder()
+                .executor(execution.executor())
+                .addService(registry)  // Register the service
                 .build()
                 .start();
+        // Write a final snapshot on exit, so the next start has no log to replay
+        Runtime.getRuntime().addShutdownHook(new Thread(registry::shutdown, "peer-register-shutdown"));
         
-        System.out.println("PeerRegister running on port 50099");
+        System.out.println("PeerRegister running on " + endpoint.describe() + " (topology policy " + TopologyPolicy.fromSystemProperty()
+                + ", " + execution + " threads)");
         System.out.println("Ready to accept node registrations");
         
         // Keep server running until terminated
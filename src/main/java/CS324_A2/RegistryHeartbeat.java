@@ -0,0 +1,137 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.HeartbeatResponse;
+import GeorgeFiji.NodeProto.LeaderResponse;
+import GeorgeFiji.NodeProto.MessageRequest;
+import GeorgeFiji.NodeProto.MessageResponse;
+import GeorgeFiji.NodeProto.NodeEndpoints;
+import GeorgeFiji.NodeProto.RegisterRequest;
+import GeorgeFiji.PeerRegisterServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * RegistryHeartbeat renews a node's lease with PeerRegister.
+ *
+ * Every INTERVAL_MS the node sends Heartbeat(origin = nodeId, message = leader
+ * it knows for its current epoch, epoch = that epoch, successor = the node it
+ * forwards to, group = its ring, peers = its own endpoints if it advertised
+ * any). PeerRegister evicts
+ * nodes whose lease has run out and repairs the ring around them, and uses the
+ * reported leader to decide whether the failure needs a new election.
+ *
+ * The response carries PeerRegister's leader and its remaining lease, which
+ * renews the node's cached leader (see NodeServiceImpl.getLeader). The lease is
+ * counted from when the heartbeat was sent, so the cache never outlives it.
+ *
+ * If PeerRegister answers ack 0 (it restarted without its registry log, or
+ * evicted this node) the node registers again by itself, so a registry restart
+ * never leaves a running node outside the ring.
+ *
+ * Heartbeats are sent with the async stub from one shared timer thread, so
+ * many nodes in one JVM (RingSimulator) do not need a thread each.
+ */
+public class RegistryHeartbeat implements AutoCloseable {
+    // Time between two heartbeats of one node
+    public static final long INTERVAL_MS = Long.getLong("lcr.heartbeat.intervalMs", 150);
+    // Deadline of one heartbeat call: longer than the interval, so a slow registry still renews
+    // the lease, but well under the lease (lcr.lease.timeoutMs), so calls do not pile up behind it
+    public static final long DEADLINE_MS = Long.getLong("lcr.heartbeat.deadlineMs", 1000);
+
+    // Shared timer for all heartbeats in this JVM
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "registry-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final NodeServiceImpl node;                                   // Node whose lease is renewed
+    private final PeerRegisterServiceGrpc.PeerRegisterServiceStub stub;   // Async stub on the registry channel
+    private final ScheduledFuture<?> task;                                // Periodic heartbeat
+    private volatile boolean failing = false;                             // True after a failed heartbeat (log once)
+    private final AtomicBoolean registering = new AtomicBoolean(false);   // True while a re-registration is in flight
+
+    /**
+     * Starts heartbeating. The registry channel stays owned by the caller.
+     */
+    public RegistryHeartbeat(NodeServiceImpl node, ManagedChannel registryChannel) {
+        this.node = node;
+        this.stub = PeerRegisterServiceGrpc.newStub(registryChannel);
+        this.task = TIMER.scheduleAtFixedRate(this::beat, INTERVAL_MS, INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void beat() {
+        ElectionState state = node.electionState();
+        MessageRequest.Builder request = MessageRequest.newBuilder()
+                .setOrigin(node.nodeId())
+                .setMessage(state.leaderId())   // 0 while this epoch's leader is unknown
+                .setEpoch(state.epoch())
+                .setSuccessor(node.nextNodeId())
+                .setGroup(node.group());
+        NodeEndpoints own = node.advertised();
+        if (own != null) request.addPeers(own);  // A restarted PeerRegister learns them from here
+        long sentAt = System.nanoTime();
+        stub.withDeadlineAfter(DEADLINE_MS, TimeUnit.MILLISECONDS).heartbeat(request.build(), new StreamObserver<>() {
+            @Override
+            public void onNext(HeartbeatResponse response) {
+                if (response.getAck() == 0) register();
+                LeaderResponse leader = response.getLeader();
+                if (leader.getLeaderId() != 0 && leader.getLeaseMillis() > 0) {
+                    node.renewLeaderLease(leader.getLeaderId(), leader.getEpoch(), sentAt + leader.getLeaseMillis() * 1_000_000);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (!failing) {
+                    failing = true;
+                    System.err.println("Node " + node.nodeId() + ": Heartbeat to PeerRegister failed: " + t.getMessage());
+                }
+            }
+
+            @Override
+            public void onCompleted() {
+                failing = false;
+            }
+        });
+    }
+
+    /**
+     * register: Registers the node with PeerRegister again, at most one attempt at a time.
+     */
+    private void register() {
+        if (!registering.compareAndSet(false, true)) return;
+        System.err.println("Node " + node.nodeId() + ": PeerRegister does not know this node - registering again");
+        RegisterRequest request = node.registerRequest();
+        stub.withDeadlineAfter(PeerRegister.BROADCAST_DEADLINE_MS, TimeUnit.MILLISECONDS).registerNode(request, new StreamObserver<>() {
+            @Override
+            public void onNext(MessageResponse response) {
+                System.out.println("Node " + node.nodeId() + " registered with PeerRegister again");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                System.err.println("Node " + node.nodeId() + ": Registering again failed: " + t.getMessage());
+                registering.set(false);
+            }
+
+            @Override
+            public void onCompleted() {
+                registering.set(false);
+            }
+        });
+    }
+
+    /**
+     * Stops heartbeating; PeerRegister will evict the node once its lease runs out.
+     */
+    @Override
+    public void close() {
+        task.cancel(false);
+    }
+}
@@ -0,0 +1,382 @@
+package CS324_A2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RegistryLog makes PeerRegister's membership survive a registry restart.
+ *
+ * Every change to a group's ring order is appended to a memory-mapped log as
+ * a small binary record: a node joined at a ring position, a node left, or the
+ * ring was re-sorted. Every SNAPSHOT_EVERY records (and on close) the whole
+ * state is written to a snapshot file and the log starts over, so a restart
+ * reads one snapshot plus a short log - milliseconds, even for large rings.
+ *
+ * A restarted PeerRegister restores the rings from recover() without sending
+ * a single setNext: the nodes kept their links while the registry was down.
+ * Each restored member is re-checked lazily when its first heartbeat reports
+ * its successor (see RingGroup.heartbeat).
+ *
+ * Files in the state directory, all values big-endian:
+ * - registry.snapshot: magic "LCRS", version, generation (long), group count,
+ *   then per group: name length, name (UTF-8), node count, node IDs in ring order
+ * - registry.<generation>.log: magic "LCRL", version, generation (long), then records:
+ *     GROUP id length name   - names a group id used by the records below
+ *     JOIN  group node index - node inserted at this ring position
+ *     LEAVE group node       - node removed
+ *     SORT  group            - ring re-sorted by ascending ID
+ *   A zero type byte marks the end of the log.
+ * The log is only replayed on top of a snapshot with the same generation, so a
+ * crash between writing a snapshot and starting the next log cannot apply changes twice.
+ * Every generation gets a new log file rather than truncating the old one: a mapped
+ * file cannot be shrunk or replaced on Windows while its mapping is alive, so old logs
+ * are deleted when possible and otherwise on a later start.
+ *
+ * Mapped writes survive a crash of the registry process; the snapshot is
+ * forced to disk when it is written.
+ *
+ * Off unless lcr.registry.state names a directory (see fromSystemProperty).
+ */
+public class RegistryLog implements AutoCloseable {
+    public static final int SNAPSHOT_MAGIC = 0x4C435253;           // "LCRS"
+    public static final int LOG_MAGIC = 0x4C43524C;                // "LCRL"
+    public static final int VERSION = 1;
+    private static final int LOG_HEADER_BYTES = 16;
+    private static final long SEGMENT_BYTES = 1 << 20;             // Log is mapped in 1 MB steps
+
+    // Directory for the registry state, or "off" (the default) to keep membership in memory only.
+    // Opt-in: a state left by an earlier run would bring back its (dead) nodes on the next start
+    public static final String LOCATION = System.getProperty("lcr.registry.state", "off");
+    // Log records after which a snapshot is written and the log starts over
+    public static final int SNAPSHOT_EVERY = Integer.getInteger("lcr.registry.snapshotEvery", 10_000);
+
+    private static final byte GROUP = 1;
+    private static final byte JOIN = 2;
+    private static final byte LEAVE = 3;
+    private static final byte SORT = 4;
+
+    private Path directory;                                         // State directory (null = disabled)
+    private final Map<String, List<Integer>> rings = new LinkedHashMap<>();  // Mirror of every group's ring order
+    private final Map<String, Integer> groupIds = new HashMap<>();  // Group name -> id used in the log
+    private long generation;                                        // Generation of snapshot and log
+    private int records;                                            // Records in the log since the snapshot
+    private FileChannel channel;                                    // Log file of the current generation
+    private MappedByteBuffer segment;                               // Mapped part of the log being written
+    private long segmentStart;                                      // File offset of segment
+
+    /**
+     * @return A log that records nothing (membership in memory only)
+     */
+    public static RegistryLog disabled() {
+        return new RegistryLog(null);
+    }
+
+    /**
+     * @return The log in the "lcr.registry.state" directory, or a disabled one if it is "off"
+     */
+    public static RegistryLog fromSystemProperty() {
+        return LOCATION.equalsIgnoreCase("off") ? disabled() : new RegistryLog(Path.of(LOCATION));
+    }
+
+    /**
+     * Opens (or creates) the registry state in a directory and replays it.
+     * If the state cannot be read, the registry starts empty and keeps running without a log.
+     */
+    public RegistryLog(Path directory) {
+        this.directory = directory;
+        if (directory == null) return;
+        try {
+            Files.createDirectories(directory);
+            load();
+            openLog();
+        } catch (IOException e) {
+            System.err.println("Registry log disabled - cannot use " + directory + ": " + e.getMessage());
+            rings.clear();
+            this.directory = null;
+        }
+    }
+
+    /**
+     * @return The state directory, or null if the log is disabled
+     */
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * recover: The ring order of every group as it was when the registry stopped.
+     */
+    public synchronized Map<String, List<Integer>> recover() {
+        Map<String, List<Integer>> copy = new LinkedHashMap<>();
+        rings.forEach((group, ring) -> copy.put(group, new ArrayList<>(ring)));
+        return copy;
+    }
+
+    /**
+     * joined: A node was inserted at the given ring position of a group.
+     */
+    public synchronized void joined(String group, int nodeId, int index) {
+        if (directory == null) return;
+        rings.computeIfAbsent(group, g -> new ArrayList<>()).add(index, nodeId);
+        append(JOIN, groupId(group), nodeId, index);
+    }
+
+    /**
+     * left: A node was removed from a group.
+     */
+    public synchronized void left(String group, int nodeId) {
+        if (directory == null) return;
+        List<Integer> ring = rings.get(group);
+        if (ring != null) ring.remove(Integer.valueOf(nodeId));
+        append(LEAVE, groupId(group), nodeId, 0);
+    }
+
+    /**
+     * sorted: A group's ring was re-sorted by ascending node ID.
+     */
+    public synchronized void sorted(String group) {
+        if (directory == null) return;
+        List<Integer> ring = rings.get(group);
+        if (ring != null) Collections.sort(ring);
+        append(SORT, groupId(group), 0, 0);
+    }
+
+    /**
+     * close: Writes a final snapshot, so the next start replays no log at all.
+     */
+    @Override
+    public synchronized void close() {
+        if (directory == null || channel == null) return;
+        try {
+            snapshot();
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            System.err.println("Registry log: could not write the final snapshot to " + directory + ": " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * @return The id of a group in the current log, naming it in the log on first use
+     */
+    private int groupId(String group) {
+        if (channel == null) return -1;
+        Integer id = groupIds.get(group);
+        if (id != null) return id;
+        int newId = groupIds.size();
+        groupIds.put(group, newId);
+        byte[] name = group.getBytes(StandardCharsets.UTF_8);
+        ensure(13 + name.length);
+        if (channel == null) return -1;
+        segment.put(GROUP).putInt(newId).putInt(name.length).putInt(0).put(name);
+        return newId;
+    }
+
+    /**
+     * append: Writes one 13-byte record and snapshots when the log has grown long enough.
+     */
+    private void append(byte type, int group, int a, int b) {
+        if (channel == null) return;
+        ensure(13);
+        if (channel == null) return;
+        segment.put(type).putInt(group).putInt(a).putInt(b);
+        if (++records >= SNAPSHOT_EVERY) {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                System.err.println("Registry log: snapshot failed, keeping the log: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * ensure: Maps the next part of the log if the current one has no room for a record.
+     */
+    private void ensure(int bytes) {
+        if (segment.remaining() > bytes) return;  // Keep room for the end marker
+        try {
+            mapSegment(segmentStart + segment.position());
+        } catch (IOException e) {
+            System.err.println("Registry log stopped - cannot extend " + logFile(generation) + ": " + e.getMessage());
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    private void mapSegment(long start) throws IOException {
+        segmentStart = start;
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, start, SEGMENT_BYTES);
+    }
+
+    /**
+     * snapshot: Writes every ring to a new snapshot of the next generation, then starts an empty log.
+     */
+    private void snapshot() throws IOException {
+        ByteBuffer buffer = encodeSnapshot(generation + 1);
+        Path target = directory.resolve("registry.snapshot");
+        Path temp = directory.resolve("registry.snapshot.tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) out.write(buffer);
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        generation++;
+        startLog();
+    }
+
+    private ByteBuffer encodeSnapshot(long generation) {
+        int size = 20;
+        for (Map.Entry<String, List<Integer>> ring : rings.entrySet()) {
+            size += 8 + ring.getKey().getBytes(StandardCharsets.UTF_8).length + 4 * ring.getValue().size();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(generation).putInt(rings.size());
+        for (Map.Entry<String, List<Integer>> ring : rings.entrySet()) {
+            byte[] name = ring.getKey().getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(name.length).put(name).putInt(ring.getValue().size());
+            for (int nodeId : ring.getValue()) buffer.putInt(nodeId);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * startLog: Starts the empty log file of the current generation and writes its header.
+     * If it cannot be created the log stops (the snapshot already holds every change so far).
+     */
+    private void startLog() {
+        FileChannel previous = channel;
+        try {
+            channel = FileChannel.open(logFile(generation), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            mapSegment(0);
+            segment.putInt(LOG_MAGIC).putInt(VERSION).putLong(generation);
+        } catch (IOException e) {
+            System.err.println("Registry log stopped - cannot start " + logFile(generation) + ": " + e.getMessage());
+            channel = null;
+        }
+        groupIds.clear();
+        records = 0;
+        if (previous != null) {
+            try {
+                previous.close();
+            } catch (IOException ignored) {
+            }
+        }
+        deleteOldLogs();
+    }
+
+    /**
+     * @return The log file of a generation
+     */
+    private Path logFile(long generation) {
+        return directory.resolve("registry." + generation + ".log");
+    }
+
+    /**
+     * deleteOldLogs: Removes the logs of earlier generations. A log that is still
+     * mapped (Windows) stays until a later call; load() ignores it anyway.
+     */
+    private void deleteOldLogs() {
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(directory, "registry.*.log")) {
+            for (Path log : logs) {
+                if (log.equals(logFile(generation))) continue;
+                try {
+                    Files.deleteIfExists(log);
+                } catch (IOException ignored) {
+                    // Still mapped; retried after the next snapshot or start
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * load: Reads the snapshot, then replays the log if it belongs to the same generation.
+     */
+    private void load() throws IOException {
+        Path snapshot = directory.resolve("registry.snapshot");
+        if (Files.exists(snapshot)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+            if (buffer.remaining() < 20 || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(snapshot + " is not a registry snapshot");
+            }
+            generation = buffer.getLong();
+            int groups = buffer.getInt();
+            for (int g = 0; g < groups; g++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                int count = buffer.getInt();
+                List<Integer> ring = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) ring.add(buffer.getInt());
+                rings.put(new String(name, StandardCharsets.UTF_8), ring);
+            }
+        }
+
+        Path log = logFile(generation);
+        if (!Files.exists(log)) return;
+        ByteBuffer buffer;
+        try (FileChannel in = FileChannel.open(log, StandardOpenOption.READ)) {
+            buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+        if (buffer.remaining() < LOG_HEADER_BYTES || buffer.getInt() != LOG_MAGIC || buffer.getInt() != VERSION
+                || buffer.getLong() != generation) {
+            return;  // Older than the snapshot (or empty): the snapshot already holds its changes
+        }
+        Map<Integer, String> names = new HashMap<>();
+        while (buffer.remaining() >= 13) {
+            byte type = buffer.get();
+            if (type == 0) break;
+            int group = buffer.getInt();
+            int a = buffer.getInt();
+            int b = buffer.getInt();
+            switch (type) {
+                case GROUP -> {
+                    byte[] name = new byte[a];
+                    buffer.get(name);
+                    names.put(group, new String(name, StandardCharsets.UTF_8));
+                }
+                case JOIN -> {
+                    List<Integer> ring = rings.computeIfAbsent(names.get(group), g -> new ArrayList<>());
+                    ring.add(Math.min(b, ring.size()), a);
+                }
+                case LEAVE -> {
+                    List<Integer> ring = rings.get(names.get(group));
+                    if (ring != null) ring.remove(Integer.valueOf(a));
+                }
+                case SORT -> {
+                    List<Integer> ring = rings.get(names.get(group));
+                    if (ring != null) Collections.sort(ring);
+                }
+                default -> throw new IOException(log + ": unknown record type " + type);
+            }
+        }
+        rings.values().removeIf(List::isEmpty);
+    }
+
+    /**
+     * openLog: Starts the log over on top of what load() restored.
+     * The restored state is written as a snapshot first, so nothing is lost.
+     */
+    private void openLog() throws IOException {
+        snapshot();
+        if (channel == null) throw new IOException("cannot start " + logFile(generation));
+    }
+}
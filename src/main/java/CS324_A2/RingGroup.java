@@ -0,0 +1,879 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.LeaderResponse;
+import GeorgeFiji.NodeProto.MessageRequest;
+import GeorgeFiji.NodeProto.MessageResponse;
+import GeorgeFiji.NodeProto.NodeEndpoints;
+import GeorgeFiji.NodeServiceGrpc;
+import io.grpc.Context;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RingGroup is PeerRegister's state for one election group: an independent
+ * ring with its own members, leases, epochs and leader.
+ *
+ * Membership changes of a group are serialized on the group's lock, so joins,
+ * repairs and broadcasts in one group never wait for another group. Groups
+ * share the registry's channel pool, scheduler, topology policy and metrics.
+ * The lock is a ReentrantLock rather than the group's monitor: linking a node
+ * blocks on setNext/setPrev calls while holding it, and a virtual thread
+ * blocked inside synchronized would pin its carrier thread (see ExecutionMode).
+ *
+ * Every RPC the group sends to a node carries the group name, so a node that
+ * serves several groups (NodeGroups) knows which of its rings is meant.
+ *
+ * Every change of the ring order gets a new layout version, sent with each
+ * setNext. With finger links enabled, the group pushes every member its
+ * fingers (the nodes 1, 2, 4, ... positions ahead) for the current layout once
+ * changes settle; a node whose fingers are older than its last setNext knows
+ * not to trust them (see NodeServiceImpl.relayOverFingers).
+ */
+public class RingGroup {
+    // Link calls of one batch (bulk registration, finger push) in flight at the same time
+    private static final int LINK_PARALLELISM = Integer.getInteger("lcr.registry.linkParallelism", 64);
+
+    private final String name;                 // Group name ("" = default group)
+    private final PeerRegister registry;       // Shared channels, scheduler and metrics
+    private final ReentrantLock lock = new ReentrantLock();  // Guards registeredNodes, pendingRelayout and pendingFingers
+
+    // List of node IDs in ring order (registration order unless the policy sorts it)
+    private final List<Integer> registeredNodes = new ArrayList<>();
+    // SORTED: true while registeredNodes is in ascending order, so place() may binary-search it
+    // (false after restoring a ring laid out under another policy, until it is re-sorted)
+    private boolean ascending = true;
+    // Pending RELAYOUT pass, replaced on every membership change
+    private ScheduledFuture<?> pendingRelayout;
+    // Pending finger refresh, replaced on every membership change
+    private ScheduledFuture<?> pendingFingers;
+    // Version of the current ring order; clock-based, so it keeps growing across registry restarts
+    private final AtomicLong layout = new AtomicLong();
+    // Newest election epoch issued for this group or reported by one of its nodes
+    private final AtomicLong lastEpoch = new AtomicLong();
+    // Last heartbeat time per member (NO_LEASE until the first heartbeat)
+    private final Map<Integer, Long> leases = new ConcurrentHashMap<>();
+    // Newest leader reported in a heartbeat, with its lease
+    private final AtomicReference<Leader> leader = new AtomicReference<>(new Leader(0, 0, 0));
+    // Election broadcasts currently in progress (RELAYOUT waits for these)
+    private final AtomicInteger broadcastsInFlight = new AtomicInteger();
+    // Members restored from the registry log whose successor link has not been checked yet
+    private final Set<Integer> unverified = ConcurrentHashMap.newKeySet();
+    // True while expired members are being evicted (one eviction task per group at a time)
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+    /**
+     * A leader, the election epoch it won and when its lease runs out (currentTimeMillis).
+     */
+    record Leader(int nodeId, long epoch, long leaseUntil) { }
+
+    RingGroup(String name, PeerRegister registry) {
+        this.name = name;
+        this.registry = registry;
+    }
+
+    /**
+     * @return Group name ("" = default group)
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return The group lock; callers that combine add and spliceIn hold it across both
+     */
+    ReentrantLock lock() {
+        return lock;
+    }
+
+    /**
+     * @return Prefix for log lines: empty for the default group
+     */
+    private String tag() {
+        return name.isEmpty() ? "" : "[group " + name + "] ";
+    }
+
+    /**
+     * @return Node IDs in current ring order
+     */
+    public List<Integer> ringOrder() {
+        lock.lock();
+        try {
+            return new ArrayList<>(registeredNodes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * ringStats: Computes how many ELECTION messages one LCR election costs on
+     * the current layout when every node starts at once.
+     *
+     * A candidate travels until it meets a larger ID (the node that drops it),
+     * and the largest candidate travels the whole ring. The hop counts are found
+     * with a single "next greater element" pass over the ring, in O(N).
+     */
+    public PeerRegister.RingStats ringStats() {
+        lock.lock();
+        try {
+            int n = registeredNodes.size();
+            long total = 0;
+            if (n > 0) {
+                // Walk the ring twice backwards, keeping a stack of candidate droppers
+                int[] stack = new int[2 * n];
+                int top = 0;
+                long[] hops = new long[n];
+                for (int k = 2 * n - 1; k >= 0; k--) {
+                    int id = registeredNodes.get(k % n);
+                    while (top > 0 && registeredNodes.get(stack[top - 1] % n) <= id) top--;
+                    if (k < n) hops[k] = top > 0 ? stack[top - 1] - k : n;
+                    stack[top++] = k;
+                }
+                for (long h : hops) total += h;
+            }
+            return new PeerRegister.RingStats(n, registry.policy(), total, Math.max(0, 2L * n - 1), (long) n * (n + 1) / 2);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * add: Adds one node to the ring list; spliceIn links it afterwards.
+     * Callers hold lock() across both, like PeerRegister.registerNode.
+     *
+     * @return False if the node is already a member of this group
+     */
+    boolean add(int nodeId) {
+        lock.lock();
+        try {
+            if (registeredNodes.contains(nodeId)) {
+                System.out.println(tag() + "Node " + nodeId + " is already registered");
+                return false;
+            }
+
+            // Add new node to the ring list at the position the policy picks
+            place(nodeId);
+            leases.put(nodeId, PeerRegister.NO_LEASE);
+            registry.joined(nodeId);
+            System.out.println(tag() + "Registered Node " + nodeId + ". Total nodes: " + registeredNodes.size());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * relink: Re-links a node that registered again although it is a member
+     * (its process restarted, or it re-registered after a registry restart):
+     * its predecessor and the node itself receive setNext again, nothing else changes.
+     * Caller must hold the group lock.
+     */
+    void relink(int nodeId) {
+        int size = registeredNodes.size();
+        int index = registeredNodes.indexOf(nodeId);
+        leases.put(nodeId, System.currentTimeMillis());
+        unverified.remove(nodeId);
+        System.out.println(tag() + "Node " + nodeId + " registered again - re-linking it in place");
+        if (index < 0 || size < 2) return;
+        connect(registeredNodes.get((index - 1 + size) % size), nodeId);
+        connect(nodeId, registeredNodes.get((index + 1) % size));
+    }
+
+    /**
+     * restore: Rebuilds the ring from the registry log after a restart, without
+     * contacting any node. Every member gets a lease extended by RESTORE_GRACE_MS
+     * while the server starts (nodes that died while the registry was down are
+     * evicted when it runs out), and its links are checked when its first
+     * heartbeat reports its successor.
+     */
+    void restore(List<Integer> order) {
+        lock.lock();
+        try {
+            // A lease is the time of the last heartbeat, so a future time adds a grace period
+            long now = System.currentTimeMillis() + PeerRegister.RESTORE_GRACE_MS;
+            for (int nodeId : order) {
+                if (registeredNodes.contains(nodeId)) continue;
+                registeredNodes.add(nodeId);
+                leases.put(nodeId, now);
+                registry.joined(nodeId);
+                unverified.add(nodeId);
+            }
+            nextLayout();
+            ascending = isAscending(registeredNodes);
+            if (registry.policy() == TopologyPolicy.SORTED && !ascending) {
+                // Laid out under another policy: re-sort it (logged, and relinked) after the grace period,
+                // when the members' first heartbeats have re-learned their endpoints
+                System.out.println(tag() + "Restored ring is not sorted - re-sorting it for the SORTED policy in "
+                        + PeerRegister.RESTORE_GRACE_MS + " ms");
+                registry.schedule(this::relayoutNow, PeerRegister.RESTORE_GRACE_MS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isAscending(List<Integer> order) {
+        for (int i = 1; i < order.size(); i++) {
+            if (order.get(i - 1) > order.get(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Restored members whose links have not been checked by a heartbeat yet
+     */
+    int unverified() {
+        return unverified.size();
+    }
+
+    /**
+     * registerNodes: Registers several nodes at once and links them into the ring
+     * in a single topology pass.
+     *
+     * Joins are appended in list order. Duplicates (already registered, or repeated
+     * in the list) are skipped. The setNext calls are issued once for the whole batch,
+     * so k joins cost about 2(k + 1) RPCs instead of 4k (setNext plus setPrev per link).
+     *
+     * @param nodeIds IDs of the joining nodes
+     * @return The IDs that were actually added
+     */
+    public List<Integer> registerNodes(List<Integer> nodeIds) {
+        lock.lock();
+        try {
+            Set<Integer> known = new HashSet<>(registeredNodes);
+            List<Integer> joined = new ArrayList<>();
+            for (int nodeId : nodeIds) {
+                if (!known.add(nodeId)) {
+                    System.out.println(tag() + "Node " + nodeId + " is already registered");
+                    continue;
+                }
+                place(nodeId);
+                leases.put(nodeId, PeerRegister.NO_LEASE);
+                registry.joined(nodeId);
+                joined.add(nodeId);
+            }
+            System.out.println(tag() + "Registered " + joined.size() + " nodes in one batch. Total nodes: " + registeredNodes.size());
+            spliceIn(joined);
+            return joined;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * place: Adds a joining node to registeredNodes.
+     * SORTED inserts at the ascending-ID position; the other policies append.
+     * Caller must hold the group lock.
+     */
+    private void place(int nodeId) {
+        int index = registeredNodes.size();
+        if (registry.policy() == TopologyPolicy.SORTED) {
+            if (ascending) {
+                index = -Collections.binarySearch(registeredNodes, nodeId) - 1;
+            } else {
+                // binarySearch is undefined on an unsorted list: take the first larger ID until the re-sort
+                index = 0;
+                while (index < registeredNodes.size() && registeredNodes.get(index) < nodeId) index++;
+            }
+        }
+        registeredNodes.add(index, nodeId);
+        registry.log().joined(name, nodeId, index);
+        nextLayout();
+    }
+
+    /**
+     * nextLayout: Starts a new layout version after the ring order changed.
+     * Based on the clock like epochs, so a restarted PeerRegister never repeats a version.
+     */
+    private void nextLayout() {
+        layout.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+    }
+
+    /**
+     * spliceIn: Links freshly added nodes into the ring without touching the rest.
+     *
+     * The only nodes whose successor changes are the new nodes themselves and
+     * the node in front of each of them. New nodes are connected first, so by the
+     * time a predecessor is redirected to a new node, that node can already forward.
+     *
+     * Example: ring 5→11→2→5, node 7 joins after 2:
+     *   setNext(7 → 5), then setNext(2 → 7)   =>   5→11→2→7→5
+     *
+     * Within each of the two steps the links of a batch are independent, so they
+     * are set concurrently: a batch of k joins takes two rounds of calls, not 2k.
+     *
+     * Caller must hold the group lock.
+     *
+     * @param joined IDs already added to registeredNodes
+     */
+    void spliceIn(List<Integer> joined) {
+        int size = registeredNodes.size();
+        if (size < 2 || joined.isEmpty()) return;
+
+        Set<Integer> fresh = new HashSet<>(joined);
+        // Ring positions of the new nodes
+        List<Integer> positions = new ArrayList<>(joined.size());
+        for (int nodeId : joined) positions.add(registeredNodes.indexOf(nodeId));
+
+        // 1) Each new node learns its successor
+        List<int[]> links = new ArrayList<>(positions.size());
+        for (int i : positions) {
+            links.add(new int[] {registeredNodes.get(i), registeredNodes.get((i + 1) % size)});
+        }
+        connectAll(links);
+        // 2) Each existing predecessor is redirected to the new node
+        links.clear();
+        for (int i : positions) {
+            int predecessor = registeredNodes.get((i - 1 + size) % size);
+            if (!fresh.contains(predecessor)) {
+                links.add(new int[] {predecessor, registeredNodes.get(i)});
+            }
+        }
+        connectAll(links);
+        System.out.println(tag() + "Ring updated: spliced in " + joined.size() + " node(s), ring size " + size);
+        System.out.println(tag() + ringStats());
+        scheduleRelayout();
+        scheduleFingers();
+    }
+
+    /**
+     * scheduleRelayout: (RELAYOUT policy) Schedules a re-sort RELAYOUT_DELAY_MS from now,
+     * replacing any pass that was already scheduled, so a burst of joins is
+     * followed by a single re-sort. Caller must hold the group lock.
+     */
+    private void scheduleRelayout() {
+        if (registry.policy() != TopologyPolicy.RELAYOUT) return;
+        if (pendingRelayout != null) pendingRelayout.cancel(false);
+        pendingRelayout = registry.schedule(this::backgroundRelayout, PeerRegister.RELAYOUT_DELAY_MS);
+    }
+
+    /**
+     * scheduleFingers: (finger links enabled) Schedules a finger refresh FINGER_DELAY_MS
+     * from now, replacing any refresh already scheduled, so a burst of changes is
+     * followed by one refresh. Caller must hold the group lock.
+     */
+    private void scheduleFingers() {
+        if (!registry.fingers()) return;
+        if (pendingFingers != null) pendingFingers.cancel(false);
+        pendingFingers = registry.schedule(this::refreshFingers, PeerRegister.FINGER_DELAY_MS);
+    }
+
+    /**
+     * refreshFingers: Pushes every member its finger links for the current layout:
+     * fingers[k] is the node 2^k positions ahead, for every 2^k < N, so a node has
+     * about log2(N) fingers. All members are updated concurrently.
+     *
+     * @return Number of nodes updated
+     */
+    public int refreshFingers() {
+        lock.lock();
+        try {
+            if (pendingFingers != null) pendingFingers.cancel(false);
+            pendingFingers = null;
+            int size = registeredNodes.size();
+            if (size < 2) return 0;
+            long version = layout.get();
+            List<Runnable> calls = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                MessageRequest.Builder request = MessageRequest.newBuilder()
+                        .setOrigin(0)         // Origin=0 indicates PeerRegister
+                        .setMessage(size)     // Ring size = span of an announcement from this node
+                        .setLayout(version)
+                        .setGroup(name);
+                for (int distance = 1; distance < size; distance <<= 1) {
+                    int finger = registeredNodes.get((i + distance) % size);
+                    request.addFingers(finger);
+                    addPeer(request, finger);
+                }
+                int nodeId = registeredNodes.get(i);
+                calls.add(() -> setFingers(nodeId, request.build()));
+            }
+            runConcurrently(calls);
+            System.out.println(tag() + "Finger links pushed to " + size + " nodes (" + (32 - Integer.numberOfLeadingZeros(size - 1))
+                    + " per node, layout " + version + ")");
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void setFingers(int nodeId, MessageRequest request) {
+        try {
+            // Bounded: the group lock is held, and an unresponsive node only loses its fingers
+            Context.ROOT.run(() -> NodeServiceGrpc.newBlockingStub(registry.channel(nodeId))
+                    .withDeadlineAfter(PeerRegister.BROADCAST_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                    .setFingers(request));
+        } catch (Exception e) {
+            System.err.println(tag() + "Failed to send finger links to Node " + nodeId + ": " + e.getMessage());
+        }
+    }
+
+    private void backgroundRelayout() {
+        lock.lock();
+        try {
+            pendingRelayout = null;
+            if (broadcastsInFlight.get() > 0) {
+                // Do not move links under a running election - try again later
+                scheduleRelayout();
+                return;
+            }
+            relayoutNow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * relayoutNow: Re-sorts the ring by ascending node ID.
+     * Only nodes whose successor actually changes receive setNext.
+     *
+     * @return Number of setNext calls issued
+     */
+    public int relayoutNow() {
+        lock.lock();
+        try {
+            int size = registeredNodes.size();
+            List<Integer> sorted = new ArrayList<>(registeredNodes);
+            Collections.sort(sorted);
+            ascending = true;
+            if (size < 2 || sorted.equals(registeredNodes)) return 0;
+
+            // Successor of every node before the re-sort
+            Map<Integer, Integer> oldNext = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                oldNext.put(registeredNodes.get(i), registeredNodes.get((i + 1) % size));
+            }
+            long before = ringStats().electionMessages();
+            registeredNodes.clear();
+            registeredNodes.addAll(sorted);
+            registry.log().sorted(name);
+            nextLayout();
+
+            int changed = 0;
+            for (int i = 0; i < size; i++) {
+                int node = sorted.get(i);
+                int next = sorted.get((i + 1) % size);
+                if (oldNext.get(node) != next) {
+                    connect(node, next);
+                    changed++;
+                }
+            }
+            PeerRegister.RingStats after = ringStats();
+            System.out.println(tag() + "Ring re-laid out in ascending ID order: " + changed + " links changed, LCR election cost "
+                    + before + " -> " + after.electionMessages() + " ELECTION messages");
+            scheduleFingers();
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * setupRingTopology: Configures the unidirectional ring topology.
+     *
+     * Creates connections: Node[i] → Node[(i+1) % N]
+     * The modulo operator ensures the last node connects back to the first node,
+     * forming a closed ring.
+     *
+     * Example with 4 nodes (IDs: 5, 11, 2, 7 in registration order):
+     *   5 → 11 → 2 → 7 → 5 (back to start)
+     *
+     * Each node is told who its successor is via the setNext() RPC call.
+     * Joins no longer use this (see spliceIn); it rebuilds every link at once.
+     * Caller must hold the group lock.
+     */
+    void setupRingTopology() {
+        System.out.println(tag() + "Setting up ring topology for " + registeredNodes.size() + " nodes...");
+
+        // Loop through all registered nodes
+        for (int i = 0; i < registeredNodes.size(); i++) {
+            int currentNode = registeredNodes.get(i);
+            // Calculate next node using modulo for circular topology
+            int nextNode = registeredNodes.get((i + 1) % registeredNodes.size());
+
+            connect(currentNode, nextNode);
+        }
+        System.out.println(tag() + "Ring topology complete!");
+        System.out.println(tag() + ringStats());
+    }
+
+    /**
+     * connect: Tells one node who its successor is via the setNext() RPC call,
+     * and the successor who its predecessor is via setPrev().
+     *
+     * The calls are detached from the incoming call that caused them (a
+     * registration or a heartbeat), so that call's deadline cannot cancel them.
+     *
+     * @param currentNode Node being configured
+     * @param nextNode Its new successor
+     */
+    private void connect(int currentNode, int nextNode) {
+        Context.ROOT.run(() -> link(currentNode, nextNode));
+    }
+
+    /**
+     * connectAll: Sets several independent links concurrently (see runConcurrently)
+     * and returns when all of them are set.
+     *
+     * @param links {node, its new successor} pairs
+     */
+    private void connectAll(List<int[]> links) {
+        List<Runnable> calls = new ArrayList<>(links.size());
+        for (int[] pair : links) calls.add(() -> connect(pair[0], pair[1]));
+        runConcurrently(calls);
+    }
+
+    /**
+     * runConcurrently: Runs blocking calls to different nodes side by side on the
+     * registry's executor (lcr.executor), at most LINK_PARALLELISM at a time, and
+     * returns when all of them have finished.
+     */
+    private void runConcurrently(List<Runnable> calls) {
+        if (calls.size() == 1) {
+            calls.get(0).run();
+            return;
+        }
+        Semaphore slots = new Semaphore(LINK_PARALLELISM);
+        CountDownLatch done = new CountDownLatch(calls.size());
+        try {
+            for (Runnable call : calls) {
+                slots.acquire();
+                registry.executor().execute(() -> {
+                    try {
+                        call.run();
+                    } finally {
+                        slots.release();
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void link(int currentNode, int nextNode) {
+        try {
+            // Create stub on the pooled channel to call the current node's setNext() method.
+            // Bounded: the group lock is held, so a hung node must not stall the group for long
+            NodeServiceGrpc.NodeServiceBlockingStub stub = NodeServiceGrpc.newBlockingStub(registry.channel(currentNode))
+                    .withDeadlineAfter(PeerRegister.BROADCAST_DEADLINE_MS, TimeUnit.MILLISECONDS);
+
+            // Build request containing the next node's ID (and where it listens, if it advertised endpoints)
+            MessageRequest.Builder request = MessageRequest.newBuilder()
+                    .setOrigin(0)           // Origin=0 indicates PeerRegister
+                    .setMessage(nextNode)   // Tell current node who its successor is
+                    .setLayout(layout.get())
+                    .setGroup(name);
+            addPeer(request, nextNode);
+
+            // Call setNext() on the current node
+            stub.setNext(request.build());
+
+            // Tell the next node who its predecessor is (bidirectional algorithms link back to it)
+            MessageRequest.Builder prev = MessageRequest.newBuilder()
+                    .setOrigin(0)
+                    .setMessage(currentNode)
+                    .setGroup(name);
+            addPeer(prev, currentNode);
+            NodeServiceGrpc.newBlockingStub(registry.channel(nextNode))
+                    .withDeadlineAfter(PeerRegister.BROADCAST_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                    .setPrev(prev.build());
+            System.out.println(tag() + "Connected Node " + currentNode + " -> Node " + nextNode);
+        } catch (Exception e) {
+            System.err.println(tag() + "Failed to connect Node " + currentNode + " to Node " + nextNode + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * addPeer: Adds a node's advertised endpoints to a link request, if it advertised any.
+     */
+    private void addPeer(MessageRequest.Builder request, int nodeId) {
+        NodeEndpoints peer = registry.peer(nodeId);
+        if (peer != null) request.addPeers(peer);
+    }
+
+    /**
+     * nextEpoch: Picks the epoch for a new election.
+     * Based on the clock, so a restarted PeerRegister does not reuse the epochs
+     * nodes already saw, and strictly increasing within this group.
+     */
+    private long nextEpoch() {
+        return lastEpoch.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+    }
+
+    /**
+     * heartbeat: Renews a member's lease and records the leader it knows.
+     *
+     * The first report of a newer epoch's leader starts a leader lease; after
+     * that only the leader's own heartbeats extend it.
+     *
+     * A member restored from the registry log is checked on its first heartbeat:
+     * if the successor it reports is not the one the restored ring expects, the
+     * link is pushed again (verifyLink). Links that are already right cost nothing.
+     *
+     * @param successor Successor the node currently forwards to (0 = none)
+     * @return False if the node is not a member of this group
+     */
+    boolean heartbeat(int nodeId, int reportedLeader, long epoch, int successor) {
+        boolean known = leases.computeIfPresent(nodeId, (id, last) -> System.currentTimeMillis()) != null;
+        if (known && unverified.contains(nodeId)) verifyLink(nodeId, successor);
+        if (known) {
+            lastEpoch.accumulateAndGet(epoch, Math::max);
+            if (reportedLeader != 0) {
+                Leader reported = new Leader(reportedLeader, epoch, System.currentTimeMillis() + NodeServiceImpl.LEADER_LEASE_MS);
+                boolean renewal = reportedLeader == nodeId;  // The leader vouches for itself
+                leader.updateAndGet(current -> reported.epoch() > current.epoch()
+                        || (renewal && reported.epoch() == current.epoch() && reportedLeader == current.nodeId())
+                        ? reported : current);
+            }
+        }
+        return known;
+    }
+
+    /**
+     * verifyLink: Compares a restored member's reported successor with the restored ring and re-links it if they differ.
+     */
+    private void verifyLink(int nodeId, int successor) {
+        lock.lock();
+        try {
+            if (!unverified.remove(nodeId)) return;
+            int size = registeredNodes.size();
+            int index = registeredNodes.indexOf(nodeId);
+            if (index < 0 || size < 2) return;
+            int expected = registeredNodes.get((index + 1) % size);
+            if (successor != expected) {
+                System.out.println(tag() + "Node " + nodeId + " forwards to Node " + successor + ", restored ring expects Node "
+                        + expected + " - re-linking");
+                connect(nodeId, expected);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The leader known from heartbeats
+     */
+    Leader leader() {
+        return leader.get();
+    }
+
+    /**
+     * @return The leader as a GetLeader answer, with its remaining lease (0 = expired)
+     */
+    LeaderResponse leaderResponse() {
+        Leader current = leader.get();
+        return LeaderResponse.newBuilder()
+                .setLeaderId(current.nodeId())
+                .setEpoch(current.epoch())
+                .setLeaseMillis(Math.max(0, current.leaseUntil() - System.currentTimeMillis()))
+                .build();
+    }
+
+    /**
+     * sweepLeases: Collects the members whose lease has run out and evicts them on the
+     * registry's executor; the caller (the sweep thread) never waits for a repair RPC.
+     * While an eviction of this group is still running, the sweep leaves the group to
+     * the next one. A member that renewed its lease in the meantime is kept.
+     */
+    void sweepLeases(long cutoff) {
+        List<Integer> expired = new ArrayList<>();
+        leases.forEach((nodeId, last) -> {
+            if (last < cutoff) expired.add(nodeId);
+        });
+        if (expired.isEmpty() || !evicting.compareAndSet(false, true)) return;
+        registry.executor().execute(() -> {
+            try {
+                for (int nodeId : expired) {
+                    Long last = leases.get(nodeId);
+                    if (last == null || last >= cutoff) continue;  // Renewed, or already removed
+                    System.out.println(tag() + "PeerRegister: Lease of Node " + nodeId + " expired");
+                    if (removeNode(nodeId)) registry.evicted();
+                }
+            } finally {
+                evicting.set(false);
+            }
+        });
+    }
+
+    /**
+     * removeNode: Removes a node from the ring and repairs the ring around it.
+     *
+     * Only the dead node's predecessor is re-pointed (setNext), and its successor
+     * learns the new predecessor (setPrev) - 2 RPCs however large the ring is.
+     * If the node was the leader, or the latest election has not reported a
+     * leader yet, one node is triggered with a new epoch; the epoch wakes the
+     * rest of the ring, so the other nodes receive no trigger RPC.
+     *
+     * @param nodeId ID of the node that left or died
+     * @return True if the node was a member
+     */
+    public boolean removeNode(int nodeId) {
+        lock.lock();
+        try {
+            leases.remove(nodeId);
+            int index = registeredNodes.indexOf(nodeId);
+            if (index < 0) return false;
+            registeredNodes.remove(index);
+            registry.log().left(name, nodeId);
+            nextLayout();
+            unverified.remove(nodeId);
+            registry.left(nodeId);
+            int size = registeredNodes.size();
+            System.out.println(tag() + "Removed Node " + nodeId + ". Total nodes: " + size);
+            if (size < 2) return true;
+
+            int predecessor = registeredNodes.get((index - 1 + size) % size);
+            int successor = registeredNodes.get(index % size);
+            connect(predecessor, successor);
+            System.out.println(tag() + "Ring repaired around Node " + nodeId + ": Node " + predecessor + " -> Node " + successor);
+            System.out.println(tag() + ringStats());
+            scheduleFingers();
+
+            // A dead leader's lease ends now, not when it would have run out
+            Leader known = leader.getAndUpdate(current -> current.nodeId() == nodeId
+                    ? new Leader(nodeId, current.epoch(), 0) : current);
+            if (known.nodeId() == nodeId || known.epoch() < lastEpoch.get()) {
+                reelect(successor, nodeId);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * reelect: Starts a new election by triggering a single node.
+     */
+    private void reelect(int starter, int failedNode) {
+        long epoch = nextEpoch();
+        registry.electionStarted();
+        System.out.println("\n=== " + tag() + "PeerRegister: Node " + failedNode + " was the leader (or the election was unfinished) - starting election epoch "
+                + epoch + " at Node " + starter + " ===\n");
+        MessageRequest trigger = MessageRequest.newBuilder()
+                .setOrigin(0)  // Origin=0 indicates PeerRegister
+                .setMessage(0)
+                .setEpoch(epoch)
+                .setGroup(name)
+                .build();
+        Context.ROOT.run(() -> NodeServiceGrpc.newStub(registry.channel(starter))
+                .withDeadlineAfter(PeerRegister.BROADCAST_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                .triggerElection(trigger, new StreamObserver<>() {
+                    @Override
+                    public void onNext(MessageResponse response) { }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        System.err.println(tag() + "PeerRegister: Failed to trigger election on Node " + starter + ": " + t.getMessage());
+                    }
+
+                    @Override
+                    public void onCompleted() { }
+                }));
+    }
+
+    /**
+     * broadcastElectionStart: Triggers every member to start an election concurrently.
+     *
+     * The triggerElection calls are sent in parallel over the pooled channels,
+     * each with its own deadline. The caller is answered once every node has
+     * replied or timed out; nodes that could not be triggered are listed in
+     * failedNodes (ack = 1 only if there were none).
+     *
+     * Every broadcast gets a new election epoch, so nodes drop the messages of
+     * any election that was still running when this one started.
+     *
+     * @param originNode Node that asked for the election
+     * @param responseObserver Used to send the aggregated result
+     */
+    void broadcastElectionStart(int originNode, StreamObserver<MessageResponse> responseObserver) {
+        List<Integer> targets = ringOrder();
+        System.out.println("\n=== " + tag() + "PeerRegister: Broadcasting election start to all " + targets.size() + " nodes ===");
+        System.out.println("    (initiated by Node " + originNode + ")\n");
+
+        if (targets.isEmpty()) {
+            responseObserver.onNext(MessageResponse.newBuilder().setAck(1).build());
+            responseObserver.onCompleted();
+            return;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(targets.size());
+        broadcastsInFlight.incrementAndGet();
+        List<Integer> failed = Collections.synchronizedList(new ArrayList<>());
+        long epoch = nextEpoch();
+        registry.electionStarted();
+        MessageRequest trigger = MessageRequest.newBuilder()
+                .setOrigin(0)  // Origin=0 indicates PeerRegister
+                .setMessage(0)
+                .setEpoch(epoch)
+                .setGroup(name)
+                .build();
+
+        // Trigger election on ALL registered nodes at once
+        for (int nodeId : targets) {
+            StreamObserver<MessageResponse> result = new StreamObserver<>() {
+                @Override
+                public void onNext(MessageResponse response) {
+                    System.out.println(tag() + "PeerRegister: Triggered election on Node " + nodeId);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    System.err.println(tag() + "PeerRegister: Failed to trigger election on Node " + nodeId + ": " + t.getMessage());
+                    failed.add(nodeId);
+                    finish();
+                }
+
+                @Override
+                public void onCompleted() {
+                    finish();
+                }
+
+                // Answer the caller once the last node has replied or failed
+                private void finish() {
+                    if (remaining.decrementAndGet() > 0) return;
+                    broadcastsInFlight.decrementAndGet();
+                    List<Integer> failedNodes;
+                    synchronized (failed) {
+                        failedNodes = new ArrayList<>(failed);
+                    }
+                    Collections.sort(failedNodes);
+                    System.out.println("\n=== " + tag() + "PeerRegister: Election broadcast complete ("
+                            + (targets.size() - failedNodes.size()) + "/" + targets.size() + " nodes"
+                            + (failedNodes.isEmpty() ? "" : ", failed: " + failedNodes) + ") ===\n");
+                    responseObserver.onNext(MessageResponse.newBuilder()
+                            .setAck(failedNodes.isEmpty() ? 1 : 0)
+                            .addAllFailedNodes(failedNodes)
+                            .build());
+                    responseObserver.onCompleted();
+                }
+            };
+
+            try {
+                // Detached from the caller's context so a caller hang-up does not cancel the fan-out
+                Context.ROOT.run(() -> NodeServiceGrpc.newStub(registry.channel(nodeId))
+                        .withDeadlineAfter(PeerRegister.BROADCAST_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                        .triggerElection(trigger, result));
+            } catch (Exception e) {
+                result.onError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageRequest;
+
+/**
+ * RingLink is an outbound connection from a node to one of its ring neighbours.
+ *
+ * NodeServiceImpl never talks to a gRPC stub directly when passing ELECTION or
+ * LEADER messages along the ring; it hands them to a RingLink, which decides
+ * how the message actually travels (blocking unary call, queued async call, ...).
+ */
+public interface RingLink {
+
+    /**
+     * @return The ID of the node this link points to
+     */
+    int targetId();
+
+    /**
+     * Delivers an ELECTION message to the target node.
+     */
+    void sendElection(MessageRequest request);
+
+    /**
+     * Delivers a LEADER announcement to the target node.
+     */
+    void sendLeader(MessageRequest request);
+
+    /**
+     * Releases the underlying channel. The link must not be used afterwards.
+     */
+    void close();
+}
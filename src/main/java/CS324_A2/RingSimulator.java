@@ -0,0 +1,745 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageRequest;
+import GeorgeFiji.NodeProto.RegisterRequest;
+import GeorgeFiji.PeerRegisterServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RingSimulator runs a whole election ring (LCR or Hirschberg-Sinclair) inside one JVM.
+ *
+ * It starts one PeerRegister and N NodeServiceImpl instances, each behind its
+ * own gRPC server (in-process unless a transport is chosen), with all servers and channels running on the
+ * threads of the chosen ExecutionMode (virtual by default). Nodes register with PeerRegister exactly like real nodes do, so the
+ * ring is built by the normal setNext path. Then every node starts an election
+ * and the simulator measures how the protocol behaved.
+ *
+ * run() does all of this once; start(), runElection() and close() can be used
+ * separately to run several elections on one ring (e.g. from a benchmark).
+ * With heartbeats started, failLeader() stops the elected leader and measures
+ * how long PeerRegister's lease-based repair takes to get a new leader known.
+ *
+ * ID orderings (IDs are 1..N, listed in ring order):
+ *   RANDOM      - shuffled with the given seed
+ *   ASCENDING   - 1, 2, ..., N  (best case for LCR, about 2N ELECTION messages)
+ *   DESCENDING  - N, N-1, ..., 1 (worst case for LCR, about N^2/2 ELECTION messages)
+ *   ADVERSARIAL - descending ring, and nodes start their elections smallest ID
+ *                 first, so the winner is the last to start
+ *
+ * Usage: java CS324_A2.RingSimulator [--nodes N] [--order random|ascending|descending|adversarial]
+ *                                    [--forwarding stream|async|blocking]
+ *                                    [--topology registration_order|sorted|relayout]
+ *                                    [--algorithm lcr|hs] [--execution virtual|platform]
+ *                                    [--registration single|bulk] [--fingers]
+ *                                    [--coalesce] [--coalesce-window-ms W]
+ *                                    [--transport inprocess|unix|tcp] [--hosted]
+ *                                    [--rings K] [--fail-leader] [--stats] [--seed S]
+ *                                    [--timeout-sec T] [--verbose]
+ *   --rings runs K independent rings of N nodes in this JVM and elects in all of them
+ *   at once; the peak number of platform threads is printed, to compare execution modes.
+ *   --transport makes every node listen on (and advertise) one endpoint of that transport,
+ *   so node-to-node calls go through it: a Unix domain socket per node, a TCP port
+ *   picked by the OS, or an advertised in-process name. Without it nodes are reached
+ *   by their plain in-process names, as before.
+ *   --hosted runs all nodes in one NodeHost behind a single server (on the --transport
+ *   endpoint, in-process by default): ring links dispatch locally, PeerRegister still
+ *   reaches the nodes through the server.
+ */
+public class RingSimulator implements AutoCloseable {
+    // Gives each simulation in this JVM its own in-process name space
+    private static final AtomicInteger RUN_COUNTER = new AtomicInteger();
+
+    /**
+     * How node IDs are laid out around the ring.
+     */
+    public enum Ordering {
+        RANDOM,
+        ASCENDING,
+        DESCENDING,
+        ADVERSARIAL
+    }
+
+    /**
+     * How start() registers the nodes with PeerRegister.
+     *   SINGLE - one RegisterNode call per node, each spliced into the ring (as Node does)
+     *   BULK   - all nodes on one RegisterNodes stream, linked in one pass (as NodeLauncher does)
+     */
+    public enum Registration {
+        SINGLE,
+        BULK
+    }
+
+    /**
+     * Results of one simulated election.
+     *
+     * @param nodes            Ring size
+     * @param leaderId         Leader every node agreed on (-1 if the nodes disagreed or timed out)
+     * @param completed        True if every node learned the leader before the timeout
+     * @param electionMessages ELECTION messages sent (own candidacies + forwards)
+     * @param leaderMessages   LEADER messages sent (announcement + forwards)
+     * @param dropped          ELECTION messages dropped by the election rule
+     * @param coalesced        ELECTION messages not sent because a larger candidate was (coalescing only)
+     * @param p50Millis        Median time from election start until a node learned the leader
+     * @param p90Millis        90th percentile of the same
+     * @param p99Millis        99th percentile of the same
+     * @param wallMillis       Time until the last node learned the leader
+     * @param spreadMillis     Time from the first node learning the leader until the last one did
+     *                         (how long the LEADER announcement took to reach everyone)
+     * @param setupMillis      Time spent starting and registering the nodes
+     * @param ringStats        Registry's view of the ring the election ran on
+     */
+    public record Report(int nodes, int leaderId, boolean completed,
+                         long electionMessages, long leaderMessages, long dropped, long coalesced,
+                         double p50Millis, double p90Millis, double p99Millis,
+                         double wallMillis, double spreadMillis, double setupMillis, PeerRegister.RingStats ringStats) {
+
+        public long messagesSent() {
+            return electionMessages + leaderMessages;
+        }
+
+        public void print(PrintStream out) {
+            out.println("=== RingSimulator report ===");
+            out.println("Nodes:               " + nodes);
+            out.println("Leader:              " + (leaderId < 0 ? "none" : "Node " + leaderId)
+                    + (completed ? "" : " (INCOMPLETE - timed out)"));
+            out.println("Messages sent:       " + messagesSent()
+                    + " (ELECTION " + electionMessages + ", LEADER " + leaderMessages + ")");
+            out.println("Messages dropped:    " + dropped);
+            if (coalesced > 0) out.println("Messages coalesced:  " + coalesced + " (ELECTION not sent, a larger candidate went instead)");
+            out.printf("Election latency:    p50 %.2f ms, p90 %.2f ms, p99 %.2f ms%n", p50Millis, p90Millis, p99Millis);
+            out.printf("Full announcement:   %.2f ms%n", wallMillis);
+            out.printf("Announcement spread: %.2f ms%n", spreadMillis);
+            out.printf("Ring setup:          %.2f ms%n", setupMillis);
+            out.println(ringStats);
+        }
+    }
+
+    private final int nodeCount;                 // Number of nodes in the ring
+    private final Ordering ordering;             // Layout of IDs around the ring
+    private final ForwardingMode forwardingMode; // Forwarding mode used by every node
+    private final TopologyPolicy topology;       // Registry's topology policy
+    private final ElectionAlgorithm algorithm;   // Election algorithm run by every node
+    private final ExecutionMode execution;       // Threads of the servers, channels and election starts
+    private final long seed;                     // Seed for RANDOM ordering
+    private final long timeoutMillis;            // Give up on the election after this long
+    private final List<Integer> ring;            // Node IDs in ring order
+    private final String namespace;              // In-process name space of this simulation
+    private final NodeChannels channels;         // In-process channels between nodes
+    private final ExecutorService executor;      // Runs node handlers, channel callbacks and election starts
+    private final ExecutorService registryExecutor;  // Runs PeerRegister's handlers
+    private final List<Server> servers = new ArrayList<>();
+    private final Server[] nodeServers;          // Each node's server, in ring order
+    private final RegistryHeartbeat[] heartbeats; // Lease renewal per node (only after startHeartbeats())
+    private final NodeServiceImpl[] nodes;       // Nodes in ring order
+    private final PeerRegister registry;         // Registry that builds the ring
+    private ManagedChannel registryChannel;      // Channel used to register the nodes
+    private Registration registration = Registration.SINGLE;  // How start() registers the nodes
+    private boolean fingers;                     // True if the registry gives the nodes finger links
+    private boolean coalescing = NodeServiceImpl.COALESCE;               // ELECTION coalescing on every node
+    private long coalesceWindowMillis = NodeServiceImpl.COALESCE_WINDOW_MS;  // Its merge window
+    private Endpoint.Transport transport;        // Transport the nodes advertise (null = plain in-process names)
+    private boolean hosted;                      // True if all nodes share one NodeHost
+    private String journalGroup = PeerRegister.DEFAULT_GROUP;  // Ring name in the nodes' journal records
+    private NodeHost host;                       // The shared host (hosted only, after start())
+    private double setupMillis;                  // Time spent in start()
+    private long electionEpoch;                  // Epoch of the last runElection()
+
+    public RingSimulator(int nodeCount, Ordering ordering, ForwardingMode forwardingMode, long seed, long timeoutMillis) {
+        this(nodeCount, ordering, forwardingMode, TopologyPolicy.REGISTRATION_ORDER, seed, timeoutMillis);
+    }
+
+    public RingSimulator(int nodeCount, Ordering ordering, ForwardingMode forwardingMode, TopologyPolicy topology,
+                         long seed, long timeoutMillis) {
+        this(nodeCount, ordering, forwardingMode, topology, ElectionAlgorithm.LCR, seed, timeoutMillis);
+    }
+
+    public RingSimulator(int nodeCount, Ordering ordering, ForwardingMode forwardingMode, TopologyPolicy topology,
+                         ElectionAlgorithm algorithm, long seed, long timeoutMillis) {
+        this(nodeCount, ordering, forwardingMode, topology, algorithm, ExecutionMode.VIRTUAL, seed, timeoutMillis);
+    }
+
+    public RingSimulator(int nodeCount, Ordering ordering, ForwardingMode forwardingMode, TopologyPolicy topology,
+                         ElectionAlgorithm algorithm, ExecutionMode execution, long seed, long timeoutMillis) {
+        if (nodeCount < 2) throw new IllegalArgumentException("A ring needs at least 2 nodes");
+        this.nodeCount = nodeCount;
+        this.ordering = ordering;
+        this.forwardingMode = forwardingMode;
+        this.topology = topology;
+        this.algorithm = algorithm;
+        this.execution = execution;
+        this.seed = seed;
+        this.timeoutMillis = timeoutMillis;
+        this.ring = ringOrder();
+        this.namespace = "sim" + RUN_COUNTER.incrementAndGet();
+        this.executor = execution.newExecutor(namespace + "-node");
+        this.registryExecutor = execution.newExecutor(namespace + "-registry");
+        this.channels = NodeChannels.inProcess(namespace, executor);
+        this.nodes = new NodeServiceImpl[nodeCount];
+        this.nodeServers = new Server[nodeCount];
+        this.heartbeats = new RegistryHeartbeat[nodeCount];
+        this.registry = new PeerRegister(channels, topology);
+    }
+
+    /**
+     * @return Node IDs in ring order for the configured ordering
+     */
+    private List<Integer> ringOrder() {
+        List<Integer> ids = new ArrayList<>(nodeCount);
+        for (int id = 1; id <= nodeCount; id++) ids.add(id);
+        switch (ordering) {
+            case RANDOM -> Collections.shuffle(ids, new Random(seed));
+            case DESCENDING, ADVERSARIAL -> Collections.reverse(ids);
+            case ASCENDING -> { }
+        }
+        return ids;
+    }
+
+    /**
+     * Selects how start() registers the nodes (default SINGLE). Call before start().
+     */
+    public RingSimulator registration(Registration registration) {
+        this.registration = registration;
+        return this;
+    }
+
+    /**
+     * Gives every node finger links, so the LEADER announcement spreads in about
+     * log2(N) hops instead of going around the ring (default off). Call before start().
+     */
+    public RingSimulator fingers(boolean enabled) {
+        this.fingers = enabled;
+        registry.fingers(enabled);
+        return this;
+    }
+
+    /**
+     * Makes every node coalesce ELECTION candidates (see NodeServiceImpl.forwardCandidate),
+     * with the given merge window (0 = suppress smaller candidates only).
+     * Default: lcr.coalesce and lcr.coalesce.windowMs. Call before start().
+     */
+    public RingSimulator coalescing(boolean enabled, long windowMillis) {
+        this.coalescing = enabled;
+        this.coalesceWindowMillis = windowMillis;
+        return this;
+    }
+
+    /**
+     * Makes every node listen on, and advertise, one endpoint of the transport, so
+     * that node-to-node calls use it (default: none, nodes are reached by their
+     * in-process names). Call before start().
+     */
+    public RingSimulator transport(Endpoint.Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * Names this ring in the event journal (default: the default group), so the
+     * elections of rings simulated side by side are decoded apart. Call before start().
+     */
+    public RingSimulator journalGroup(String name) {
+        this.journalGroup = name;
+        return this;
+    }
+
+    /**
+     * Runs every node in one NodeHost behind a single server (default: a server per
+     * node), so ring links dispatch locally without gRPC. The host listens on one
+     * endpoint of the chosen transport, in-process if none. Call before start().
+     */
+    public RingSimulator hosted(boolean enabled) {
+        this.hosted = enabled;
+        return this;
+    }
+
+    /**
+     * Builds the ring, runs one election and tears everything down again.
+     */
+    public Report run() throws Exception {
+        try (RingSimulator simulator = this) {
+            simulator.start();
+            return simulator.runElection();
+        }
+    }
+
+    /**
+     * Starts PeerRegister and all nodes, and waits until the ring is fully linked.
+     */
+    public void start() throws Exception {
+        long setupStart = System.nanoTime();
+
+        // Start PeerRegister on its own in-process server and executor, so its blocking
+        // setNext calls never wait for threads the node servers are using
+        String registryName = namespace + "-registry";
+        servers.add(InProcessServerBuilder.forName(registryName)
+                .executor(registryExecutor)
+                .addService(registry)
+                .build()
+                .start());
+
+        if (hosted) {
+            startHost();
+        } else {
+            startNodes();
+        }
+
+        // Register in ring order - with REGISTRATION_ORDER the ring keeps this order,
+        // the sorting policies rearrange it
+        registryChannel = InProcessChannelBuilder.forName(registryName).executor(executor).build();
+        if (registration == Registration.BULK) {
+            List<RegisterRequest> requests = new ArrayList<>(nodeCount);
+            for (NodeServiceImpl node : nodes) requests.add(node.registerRequest());
+            NodeLauncher.registerAll(registryChannel, requests, timeoutMillis);
+        } else {
+            PeerRegisterServiceGrpc.PeerRegisterServiceBlockingStub registryStub =
+                    PeerRegisterServiceGrpc.newBlockingStub(registryChannel);
+            for (NodeServiceImpl node : nodes) {
+                registryStub.registerNode(node.registerRequest());
+            }
+        }
+        if (topology == TopologyPolicy.RELAYOUT) {
+            registry.relayoutNow();  // Don't wait for the background pass
+        }
+        awaitRing();
+        if (fingers) {
+            registry.refreshFingers();  // Don't wait for the background refresh
+        }
+        setupMillis = (System.nanoTime() - setupStart) / 1e6;
+    }
+
+    /**
+     * startNodes: Gives every node its own service and server.
+     */
+    private void startNodes() throws IOException {
+        for (int i = 0; i < nodeCount; i++) {
+            int id = ring.get(i);
+            nodes[i] = new NodeServiceImpl(id, forwardingMode, channels, algorithm, execution);
+            nodes[i].setCoalescing(coalescing, coalesceWindowMillis);
+            nodes[i].setJournalGroup(journalGroup);
+            Endpoint endpoint = transport == null ? null : endpoint(transport, "node-" + id);
+            nodeServers[i] = (endpoint != null ? endpoint.serverBuilder()
+                            : InProcessServerBuilder.forName(NodeChannels.inProcessName(namespace, id)))
+                    .executor(executor)
+                    .addService(nodes[i])
+                    .build()
+                    .start();
+            servers.add(nodeServers[i]);
+            if (endpoint != null) nodes[i].advertise(List.of(started(endpoint, nodeServers[i])));
+        }
+    }
+
+    /**
+     * startHost: Runs every node in one NodeHost behind one server; ring links
+     * between them dispatch locally.
+     */
+    private void startHost() throws IOException {
+        host = new NodeHost(forwardingMode, channels, algorithm, execution);
+        Endpoint endpoint = endpoint(transport == null ? Endpoint.Transport.INPROCESS : transport, "host");
+        Server server = endpoint.serverBuilder()
+                .executor(executor)
+                .addService(host)
+                .build()
+                .start();
+        servers.add(server);
+        host.advertise(List.of(started(endpoint, server)));
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i] = host.add(ring.get(i)).join(PeerRegister.DEFAULT_GROUP);
+            nodes[i].setCoalescing(coalescing, coalesceWindowMillis);
+            nodes[i].setJournalGroup(journalGroup);
+            nodeServers[i] = server;
+        }
+    }
+
+    /**
+     * @return An endpoint of the transport for one server of this simulation
+     */
+    private Endpoint endpoint(Endpoint.Transport transport, String name) {
+        return switch (transport) {
+            case INPROCESS -> Endpoint.inProcess(namespace + "-endpoint-" + name);
+            case UNIX -> Endpoint.unix(Endpoint.SOCKET_DIR.resolve(namespace + "-" + ProcessHandle.current().pid()
+                    + "-" + name + ".sock"));
+            case TCP -> Endpoint.tcp("127.0.0.1", 0);  // Any free port; advertised once the server is started
+        };
+    }
+
+    /**
+     * @return The endpoint to advertise for a started server (a TCP server on port 0 only knows its port now)
+     */
+    private static Endpoint started(Endpoint endpoint, Server server) {
+        return endpoint.transport() == Endpoint.Transport.TCP ? Endpoint.tcp("127.0.0.1", server.getPort()) : endpoint;
+    }
+
+    /**
+     * Runs one election on the started ring, with every node starting concurrently.
+     * Can be called repeatedly; each report only counts that election's messages.
+     * Every run uses a new clock-based epoch, as a PeerRegister broadcast would,
+     * so the event journals of separate runs do not mix elections.
+     */
+    public Report runElection() throws InterruptedException {
+        long[] baseline = messageTotals();
+        long epoch = electionEpoch = Math.max(electionEpoch + 1, System.currentTimeMillis());
+
+        // Record when each node learns the leader
+        CountDownLatch everyoneKnows = new CountDownLatch(nodeCount);
+        long[] learnedAt = new long[nodeCount];
+        int[] learnedLeader = new int[nodeCount];
+        AtomicLong electionStart = new AtomicLong();
+        for (int i = 0; i < nodeCount; i++) {
+            int index = i;
+            nodes[i].setLeaderListener(winnerId -> {
+                learnedAt[index] = System.nanoTime() - electionStart.get();
+                learnedLeader[index] = winnerId;
+                everyoneKnows.countDown();
+            });
+        }
+
+        // Start the election on every node concurrently
+        List<NodeServiceImpl> starters = new ArrayList<>(Arrays.asList(nodes));
+        if (ordering == Ordering.ADVERSARIAL) {
+            starters.sort((a, b) -> Integer.compare(a.nodeId(), b.nodeId()));
+        }
+        electionStart.set(System.nanoTime());
+        for (NodeServiceImpl node : starters) {
+            executor.execute(() -> node.startElection(epoch));
+        }
+        boolean completed = everyoneKnows.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        double wallMillis = (System.nanoTime() - electionStart.get()) / 1e6;
+
+        return buildReport(baseline, learnedAt, learnedLeader, completed, wallMillis);
+    }
+
+    /**
+     * Result of a leader failure.
+     *
+     * @param failedLeader     Leader that was stopped
+     * @param newLeader        Leader the surviving nodes agreed on (-1 if they disagreed or timed out)
+     * @param completed        True if every surviving node learned a new leader before the timeout
+     * @param electionMessages ELECTION messages sent by the re-election
+     * @param recoveryMillis   Time from stopping the leader until the last survivor learned the new one
+     */
+    public record Failover(int failedLeader, int newLeader, boolean completed, long electionMessages, double recoveryMillis) {
+
+        public void print(PrintStream out) {
+            out.println("=== Leader failover ===");
+            out.println("Stopped leader:      Node " + failedLeader);
+            out.println("New leader:          " + (newLeader < 0 ? "none" : "Node " + newLeader)
+                    + (completed ? "" : " (INCOMPLETE - timed out)"));
+            out.println("Re-election:         " + electionMessages + " ELECTION messages");
+            out.printf("Recovery time:       %.2f ms%n", recoveryMillis);
+        }
+    }
+
+    /**
+     * Starts lease heartbeats from every node to PeerRegister, so failed nodes are detected.
+     */
+    public void startHeartbeats() {
+        for (int i = 0; i < nodeCount; i++) {
+            if (heartbeats[i] == null) heartbeats[i] = new RegistryHeartbeat(nodes[i], registryChannel);
+        }
+    }
+
+    /**
+     * Stops a node (server, links and heartbeats) as if its process had died, then
+     * waits until every surviving node has learned a leader other than that node.
+     * Needs startHeartbeats(), and PeerRegister must have seen the leader in a heartbeat.
+     */
+    public Failover failLeader(int leaderId) throws InterruptedException {
+        int failed = ring.indexOf(leaderId);
+        long[] baseline = messageTotals();
+
+        CountDownLatch everyoneKnows = new CountDownLatch(nodeCount - 1);
+        AtomicIntegerArray learnedLeader = new AtomicIntegerArray(nodeCount);
+        long[] learnedAt = new long[nodeCount];
+        AtomicLong failedAt = new AtomicLong();
+        for (int i = 0; i < nodeCount; i++) {
+            if (i == failed) continue;
+            int index = i;
+            nodes[i].setLeaderListener(winnerId -> {
+                if (winnerId != leaderId && learnedLeader.compareAndSet(index, 0, winnerId)) {
+                    learnedAt[index] = System.nanoTime() - failedAt.get();
+                    everyoneKnows.countDown();
+                }
+            });
+        }
+
+        failedAt.set(System.nanoTime());
+        if (heartbeats[failed] != null) heartbeats[failed].close();
+        if (host != null) {
+            host.remove(nodes[failed].nodeId());  // The other nodes share its server
+        } else {
+            nodeServers[failed].shutdownNow();
+        }
+        nodes[failed].shutdown();
+        boolean completed = everyoneKnows.await(timeoutMillis, TimeUnit.MILLISECONDS);
+
+        int newLeader = -2;
+        long last = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            if (i == failed) continue;
+            int winner = learnedLeader.get(i);
+            newLeader = newLeader == -2 || newLeader == winner ? winner : -1;
+            last = Math.max(last, learnedAt[i]);
+        }
+        if (!completed) newLeader = -1;
+        double recoveryMillis = completed ? last / 1e6 : (System.nanoTime() - failedAt.get()) / 1e6;
+        return new Failover(leaderId, newLeader, completed, messageTotals()[0] - baseline[0], recoveryMillis);
+    }
+
+    /**
+     * @return PeerRegister's GetStats output and the given node's metrics, in Prometheus text format
+     */
+    public String prometheus(int nodeId) {
+        String registryStats = PeerRegisterServiceGrpc.newBlockingStub(registryChannel)
+                .getStats(MessageRequest.getDefaultInstance())
+                .getPrometheus();
+        return registryStats + nodes[ring.indexOf(nodeId)].metrics().export(nodeId).getPrometheus();
+    }
+
+    /**
+     * Shuts down every node, server and executor started by this simulator.
+     */
+    @Override
+    public void close() {
+        for (RegistryHeartbeat heartbeat : heartbeats) {
+            if (heartbeat != null) heartbeat.close();
+        }
+        for (NodeServiceImpl node : nodes) {
+            if (node != null) node.shutdown();
+        }
+        if (registryChannel != null) registryChannel.shutdownNow();
+        registry.shutdown();
+        if (host != null) host.shutdown();
+        for (Server server : servers) server.shutdownNow();
+        try {
+            // Socket servers finish their calls on the executor, so let them stop first
+            for (Server server : servers) server.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+        registryExecutor.shutdownNow();
+    }
+
+    /**
+     * Waits until every node points at the successor and predecessor the registry assigned it.
+     */
+    private void awaitRing() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        List<Integer> order = registry.ringOrder();
+        for (int i = 0; i < nodeCount; i++) {
+            int position = order.indexOf(ring.get(i));
+            int expectedNext = order.get((position + 1) % nodeCount);
+            int expectedPrev = order.get((position - 1 + nodeCount) % nodeCount);
+            while (nodes[i].nextNodeId() != expectedNext || nodes[i].prevNodeId() != expectedPrev) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Ring was not configured within " + timeoutMillis + " ms");
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    /**
+     * @return Ring-wide {ELECTION sent, LEADER sent, ELECTION dropped, ELECTION coalesced} so far
+     */
+    private long[] messageTotals() {
+        long[] totals = new long[4];
+        for (NodeServiceImpl node : nodes) {
+            totals[0] += node.metrics().electionSent.sum();
+            totals[1] += node.metrics().leaderSent.sum();
+            totals[2] += node.metrics().electionDropped.sum();
+            totals[3] += node.metrics().electionCoalesced.sum();
+        }
+        return totals;
+    }
+
+    private Report buildReport(long[] baseline, long[] learnedAt, int[] learnedLeader,
+                               boolean completed, double wallMillis) {
+        long[] totals = messageTotals();
+        long electionMessages = totals[0] - baseline[0];
+        long leaderMessages = totals[1] - baseline[1];
+        long dropped = totals[2] - baseline[2];
+        long coalesced = totals[3] - baseline[3];
+
+        int leaderId = learnedLeader[0];
+        for (int winner : learnedLeader) {
+            if (winner != leaderId) leaderId = -1;
+        }
+        if (!completed) {
+            leaderId = -1;
+        } else {
+            // Full announcement = last node to learn, not the time we noticed it
+            wallMillis = Arrays.stream(learnedAt).max().orElse(0) / 1e6;
+        }
+
+        long[] sorted = learnedAt.clone();
+        Arrays.sort(sorted);
+        double spreadMillis = completed ? (sorted[sorted.length - 1] - sorted[0]) / 1e6 : 0;
+        return new Report(nodeCount, leaderId, completed, electionMessages, leaderMessages, dropped, coalesced,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                wallMillis, spreadMillis, setupMillis, registry.ringStats());
+    }
+
+    /**
+     * Nearest-rank percentile of a sorted array of nanosecond values, in milliseconds.
+     */
+    private static double percentile(long[] sortedNanos, double p) {
+        int rank = (int) Math.ceil(p * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(rank, sortedNanos.length - 1))] / 1e6;
+    }
+
+    /**
+     * Main entry point: parses options, runs one simulation and prints the report.
+     */
+    public static void main(String[] args) throws Exception {
+        int nodes = 100;
+        Ordering ordering = Ordering.RANDOM;
+        ForwardingMode forwarding = ForwardingMode.fromSystemProperty();
+        TopologyPolicy topology = TopologyPolicy.REGISTRATION_ORDER;
+        ElectionAlgorithm algorithm = ElectionAlgorithm.fromSystemProperty();
+        ExecutionMode execution = ExecutionMode.fromSystemProperty();
+        Registration registration = Registration.SINGLE;
+        boolean fingers = false;
+        boolean coalesce = NodeServiceImpl.COALESCE;
+        long coalesceWindowMs = NodeServiceImpl.COALESCE_WINDOW_MS;
+        Endpoint.Transport transport = null;
+        boolean hosted = false;
+        int rings = 1;
+        long seed = 42;
+        long timeoutSec = 120;
+        boolean verbose = false;
+        boolean failLeader = false;
+        boolean stats = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--nodes" -> nodes = Integer.parseInt(args[++i]);
+                case "--order" -> ordering = Ordering.valueOf(args[++i].toUpperCase());
+                case "--forwarding" -> forwarding = ForwardingMode.valueOf(args[++i].toUpperCase());
+                case "--topology" -> topology = TopologyPolicy.valueOf(args[++i].toUpperCase());
+                case "--algorithm" -> algorithm = ElectionAlgorithm.valueOf(args[++i].toUpperCase());
+                case "--execution" -> execution = ExecutionMode.valueOf(args[++i].toUpperCase());
+                case "--registration" -> registration = Registration.valueOf(args[++i].toUpperCase());
+                case "--fingers" -> fingers = true;
+                case "--coalesce" -> coalesce = true;
+                case "--coalesce-window-ms" -> {
+                    coalesce = true;
+                    coalesceWindowMs = Long.parseLong(args[++i]);
+                }
+                case "--transport" -> transport = Endpoint.Transport.valueOf(args[++i].toUpperCase());
+                case "--hosted" -> hosted = true;
+                case "--rings" -> rings = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--timeout-sec" -> timeoutSec = Long.parseLong(args[++i]);
+                case "--verbose" -> verbose = true;
+                case "--fail-leader" -> failLeader = true;
+                case "--stats" -> stats = true;
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+                }
+            }
+        }
+
+        PrintStream console = System.out;
+        PrintStream errors = System.err;
+        System.out.println("Simulating " + (rings > 1 ? rings + " rings of " : "") + nodes + " nodes, " + ordering + " ordering, "
+                + forwarding + " forwarding, " + topology + " topology, " + algorithm + " election, " + execution + " threads"
+                + (fingers ? ", LEADER over finger links" : "")
+                + (coalesce ? ", ELECTION coalescing (window " + coalesceWindowMs + " ms)" : "")
+                + (transport != null ? ", " + transport.scheme() + " transport" : "")
+                + (hosted ? ", one NodeHost" : "") + "...");
+        // Per-message node output would dominate the run time at large N
+        EventJournal.setConsole(verbose);
+        if (!verbose) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            // A stopped leader makes its neighbours report failed forwards
+            if (failLeader) System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        }
+        Report[] reports = new Report[rings];
+        Failover failover = null;
+        String metrics = null;
+        int peakThreads;
+        List<RingSimulator> simulators = new ArrayList<>();
+        try {
+            for (int r = 0; r < rings; r++) {
+                simulators.add(new RingSimulator(nodes, ordering, forwarding, topology, algorithm, execution, seed + r, timeoutSec * 1000)
+                        .registration(registration)
+                        .fingers(fingers)
+                        .coalescing(coalesce, coalesceWindowMs)
+                        .transport(transport)
+                        .hosted(hosted)
+                        .journalGroup(rings > 1 ? "ring-" + (r + 1) : PeerRegister.DEFAULT_GROUP));
+                simulators.get(r).start();
+            }
+            RingSimulator first = simulators.get(0);
+            if (failLeader) first.startHeartbeats();
+
+            // Elect in every ring at once; each runElection waits on its own ring only
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+            List<Thread> elections = new ArrayList<>();
+            Exception[] failure = new Exception[1];
+            for (int r = 0; r < rings; r++) {
+                int index = r;
+                elections.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        reports[index] = simulators.get(index).runElection();
+                    } catch (InterruptedException e) {
+                        failure[0] = e;
+                    }
+                }));
+            }
+            for (Thread election : elections) election.join();
+            if (failure[0] != null) throw failure[0];
+            peakThreads = threads.getPeakThreadCount();
+
+            if (stats && reports[0].completed()) {
+                metrics = first.prometheus(reports[0].leaderId());
+            }
+            if (failLeader && reports[0].completed()) {
+                // Let PeerRegister learn the leader from a heartbeat before it fails
+                Thread.sleep(3 * RegistryHeartbeat.INTERVAL_MS);
+                failover = first.failLeader(reports[0].leaderId());
+            }
+        } finally {
+            simulators.forEach(RingSimulator::close);
+            System.setOut(console);
+            System.setErr(errors);
+        }
+        boolean completed = true;
+        for (int r = 0; r < rings; r++) {
+            if (rings > 1) console.println("--- Ring " + (r + 1) + " ---");
+            reports[r].print(console);
+            completed &= reports[r].completed();
+        }
+        if (failover != null) failover.print(console);
+        console.println("Peak platform threads: " + peakThreads + " (" + execution + " threads)");
+        EventJournal journal = EventJournal.shared();
+        journal.close();  // Flush, so the file is complete for JournalDecoder
+        if (journal.file() != null) {
+            console.println("Event journal:       " + journal.file() + " (" + journal.written() + " events, " + journal.dropped() + " dropped)");
+        }
+        if (metrics != null) console.print(metrics);
+        System.exit(completed && (failover == null || failover.completed()) ? 0 : 2);
+    }
+}
@@ -0,0 +1,98 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.RingAck;
+import GeorgeFiji.NodeProto.RingFrame;
+import io.grpc.stub.StreamObserver;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * RingStreamReceiver is the server side of a RingStream link.
+ *
+ * Frames are dispatched to the owning NodeServiceImpl in arrival order.
+ * Behind NodeGroups the owner is looked up per frame from the payload's group,
+ * so one node's links in different groups can share a connection.
+ * Instead of one acknowledgment per message, a cumulative RingAck is sent
+ * after every ACK_BATCH frames, or ACK_DELAY_MS after the last unacknowledged
+ * frame if the batch does not fill up.
+ */
+public class RingStreamReceiver implements StreamObserver<RingFrame> {
+    private static final int ACK_BATCH = 32;        // Frames per acknowledgment
+    private static final long ACK_DELAY_MS = 5;     // Longest an ack may be held back
+
+    // Shared timer for delayed acknowledgments of partially filled batches
+    private static final ScheduledExecutorService ACK_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ring-stream-ack");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Function<String, NodeServiceImpl> members;  // Group -> node that handles its frames (null = unknown)
+    private final StreamObserver<RingAck> acks;            // Acknowledgments to the predecessor
+    private long handledSeq = 0;                           // Highest frame handled so far
+    private long ackedSeq = 0;                             // Highest frame acknowledged so far
+    private boolean flushScheduled = false;                // True while a delayed ack is pending
+    private boolean closed = false;                        // True once the stream has ended
+
+    public RingStreamReceiver(NodeServiceImpl node, StreamObserver<RingAck> acks) {
+        this(group -> node, acks);
+    }
+
+    public RingStreamReceiver(Function<String, NodeServiceImpl> members, StreamObserver<RingAck> acks) {
+        this.members = members;
+        this.acks = acks;
+    }
+
+    @Override
+    public void onNext(RingFrame frame) {
+        NodeServiceImpl node = members.apply(frame.getPayload().getGroup());
+        if (node == null) {
+            System.err.println("Ring stream: ignoring frame for unknown group '" + frame.getPayload().getGroup() + "'");
+        } else {
+            switch (frame.getType()) {
+                case ELECTION -> node.handleElection(frame.getPayload());
+                case LEADER -> node.handleLeader(frame.getPayload());
+                default -> System.err.println("Ring stream: ignoring frame of unknown type " + frame.getTypeValue());
+            }
+        }
+
+        synchronized (this) {
+            handledSeq = frame.getSeq();
+            if (handledSeq - ackedSeq >= ACK_BATCH) {
+                flushAck();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                ACK_TIMER.schedule(this::delayedFlush, ACK_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private synchronized void delayedFlush() {
+        flushScheduled = false;
+        flushAck();
+    }
+
+    /**
+     * Sends a cumulative ack for everything handled so far. Caller holds the lock.
+     */
+    private void flushAck() {
+        if (closed || handledSeq == ackedSeq) return;
+        ackedSeq = handledSeq;
+        acks.onNext(RingAck.newBuilder().setAckedSeq(ackedSeq).build());
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        // Predecessor went away; it falls back to unary calls on its side
+        closed = true;
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        flushAck();
+        closed = true;
+        acks.onCompleted();
+    }
+}
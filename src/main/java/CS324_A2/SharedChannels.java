@@ -0,0 +1,114 @@
+package CS324_A2;
+
+import io.grpc.ManagedChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SharedChannels hands out one connection per target node to several owners.
+ *
+ * A node taking part in many election groups has a ring link per group, and
+ * the same neighbour often appears in several of them. Instead of one channel
+ * (one TCP connection) per link, every open(nodeId) returns a handle on a
+ * shared channel; the underlying channel is shut down when its last handle is.
+ * Streams and calls of different groups are multiplexed on it by HTTP/2.
+ */
+public class SharedChannels implements NodeChannels {
+    private final NodeChannels channels;                        // Opens the real channels
+    private final Map<Integer, Shared> open = new HashMap<>();  // Node ID -> shared channel (guarded by this)
+
+    /**
+     * A real channel and how many handles are using it.
+     */
+    private static final class Shared {
+        final ManagedChannel channel;
+        int handles;
+
+        Shared(ManagedChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    public SharedChannels(NodeChannels channels) {
+        this.channels = channels;
+    }
+
+    /**
+     * Returns a handle on the shared channel to the node. Shutting the handle down
+     * releases it; the connection stays open while other handles use it.
+     */
+    @Override
+    public synchronized ManagedChannel open(int nodeId) {
+        Shared shared = open.get(nodeId);
+        if (shared == null || shared.channel.isShutdown()) {
+            shared = new Shared(channels.open(nodeId));
+            open.put(nodeId, shared);
+        }
+        shared.handles++;
+        return new Handle(nodeId, shared);
+    }
+
+    @Override
+    public boolean learn(int nodeId, List<Endpoint> endpoints) {
+        return channels.learn(nodeId, endpoints);
+    }
+
+    @Override
+    public List<Endpoint> endpoints(int nodeId) {
+        return channels.endpoints(nodeId);
+    }
+
+    @Override
+    public RingLink localLink(int nodeId, int targetId, String group) {
+        return channels.localLink(nodeId, targetId, group);
+    }
+
+    private synchronized void release(int nodeId, Shared shared) {
+        if (--shared.handles > 0) return;
+        open.remove(nodeId, shared);
+        shared.channel.shutdown();
+    }
+
+    /**
+     * @return Number of open connections
+     */
+    public synchronized int connections() {
+        return open.size();
+    }
+
+    /**
+     * One owner's use of a shared channel.
+     */
+    private final class Handle extends InterceptedChannel {
+        private final int nodeId;
+        private final Shared shared;
+        private boolean released = false;
+
+        Handle(int nodeId, Shared shared) {
+            super(shared.channel);
+            this.nodeId = nodeId;
+            this.shared = shared;
+        }
+
+        @Override
+        public ManagedChannel shutdown() {
+            synchronized (this) {
+                if (released) return this;
+                released = true;
+            }
+            release(nodeId, shared);
+            return this;
+        }
+
+        @Override
+        public ManagedChannel shutdownNow() {
+            return shutdown();
+        }
+
+        @Override
+        public synchronized boolean isShutdown() {
+            return released;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.LatencySummary;
+import GeorgeFiji.NodeProto.StatsResponse;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StatsExport turns counters and LatencyHistograms into a GetStats answer.
+ *
+ * The same data is written twice: as structured maps in StatsResponse, and as
+ * Prometheus text exposition format in StatsResponse.prometheus, so the output
+ * of GetStats (or the node's "stats" command) can be scraped or saved as is.
+ * Latencies become Prometheus summaries in seconds (quantiles 0.5/0.9/0.99).
+ *
+ * Usage: new StatsExport("node=\"5\"").counter(...).latency(...).build()
+ */
+public class StatsExport {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final String labels;                                      // Labels added to every series
+    private final StatsResponse.Builder stats = StatsResponse.newBuilder();
+    private final StringBuilder text = new StringBuilder();           // Prometheus exposition
+
+    /**
+     * @param labels Prometheus labels for every series without braces, e.g. node="5" (may be empty)
+     */
+    public StatsExport(String labels) {
+        this.labels = labels;
+    }
+
+    public StatsExport counter(String name, String help, long value) {
+        return sample(name, "counter", help, value);
+    }
+
+    public StatsExport gauge(String name, String help, long value) {
+        return sample(name, "gauge", help, value);
+    }
+
+    private StatsExport sample(String name, String type, String help, long value) {
+        header(name, type, help);
+        text.append(name).append(braces(labels)).append(' ').append(value).append('\n');
+        stats.putCounters(name, value);
+        return this;
+    }
+
+    /**
+     * One latency histogram as a summary.
+     */
+    public StatsExport latency(String name, String help, LatencyHistogram histogram) {
+        header(name, "summary", help);
+        series(name, null, histogram);
+        return this;
+    }
+
+    /**
+     * Per-method latency histograms (see MetricsInterceptor) as one summary with a method label.
+     */
+    public StatsExport latencies(String name, String help, Map<String, LatencyHistogram> byMethod) {
+        if (byMethod.isEmpty()) return this;
+        header(name, "summary", help);
+        new TreeMap<>(byMethod).forEach((method, histogram) -> series(name, method, histogram));
+        return this;
+    }
+
+    /**
+     * Per-method counters (e.g. failed calls) as one counter with a method label.
+     */
+    public StatsExport counters(String name, String help, Map<String, LongAdder> byMethod) {
+        if (byMethod.isEmpty()) return this;
+        header(name, "counter", help);
+        new TreeMap<>(byMethod).forEach((method, adder) -> {
+            String methodLabel = "method=\"" + method + "\"";
+            text.append(name).append(braces(join(labels, methodLabel))).append(' ').append(adder.sum()).append('\n');
+            stats.putCounters(name + braces(methodLabel), adder.sum());
+        });
+        return this;
+    }
+
+    public StatsResponse build() {
+        return stats.setPrometheus(text.toString()).build();
+    }
+
+    /**
+     * Quantile, _sum and _count lines of one summary series.
+     */
+    private void series(String name, String method, LatencyHistogram histogram) {
+        String methodLabel = method == null ? "" : "method=\"" + method + "\"";
+        String seriesLabels = method == null ? labels : join(labels, methodLabel);
+        for (double q : QUANTILES) {
+            text.append(name).append(braces(join(seriesLabels, "quantile=\"" + q + "\""))).append(' ')
+                    .append(seconds(histogram.percentileNanos(q * 100))).append('\n');
+        }
+        text.append(name).append("_sum").append(braces(seriesLabels)).append(' ').append(seconds(histogram.sumNanos())).append('\n');
+        text.append(name).append("_count").append(braces(seriesLabels)).append(' ').append(histogram.count()).append('\n');
+
+        stats.putLatencies(name + braces(methodLabel),
+                LatencySummary.newBuilder()
+                        .setCount(histogram.count())
+                        .setP50Nanos(histogram.percentileNanos(50))
+                        .setP90Nanos(histogram.percentileNanos(90))
+                        .setP99Nanos(histogram.percentileNanos(99))
+                        .setMaxNanos(histogram.maxNanos())
+                        .setSumNanos(histogram.sumNanos())
+                        .build());
+    }
+
+    private void header(String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * @return name="value" with the value escaped for the Prometheus text format
+     */
+    public static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private static String join(String a, String b) {
+        return a.isEmpty() ? b : a + "," + b;
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
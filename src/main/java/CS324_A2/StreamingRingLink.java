@@ -0,0 +1,219 @@
+package CS324_A2;
+
+import GeorgeFiji.NodeProto.MessageRequest;
+import GeorgeFiji.NodeProto.RingAck;
+import GeorgeFiji.NodeProto.RingFrame;
+import GeorgeFiji.NodeServiceGrpc;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StreamingRingLink sends ring messages over one long-lived RingStream call.
+ *
+ * The stream is opened once when the link is created (i.e. in setNext) and
+ * every ELECTION/LEADER message afterwards is a RingFrame on that stream,
+ * avoiding a new HTTP/2 stream and unary response per hop.
+ *
+ * Flow control:
+ * - Frames are only written while the transport reports isReady(); the rest
+ *   wait in a bounded backlog and are written from the onReady callback.
+ * - At most MAX_UNACKED frames may be written but not yet acknowledged.
+ *
+ * If the stream fails, every unacknowledged and backlogged frame is handed to
+ * an AsyncRingLink (unary calls) in order, and messages keep going that way
+ * while the stream is down. The stream is re-opened after RECONNECT_MIN_MS,
+ * doubling up to RECONNECT_MAX_MS while attempts keep failing; the first ack
+ * on a new stream resets the backoff. Delivery is therefore at-least-once: the
+ * successor may already have handled some unacknowledged frames, and frames sent
+ * unary just before the stream came back may arrive after newer stream frames.
+ * The election handlers tolerate both (Hirschberg-Sinclair counts one reply per
+ * direction).
+ */
+public class StreamingRingLink implements RingLink {
+    private static final int MAX_UNACKED = 256;            // Written-but-unacknowledged window
+    private static final long RECONNECT_MIN_MS = 100;      // First wait before re-opening a failed stream
+    private static final long RECONNECT_MAX_MS = 5000;     // Longest wait between re-open attempts
+
+    // Shared timer for re-opening failed streams
+    private static final ScheduledExecutorService RECONNECT_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ring-stream-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final int nodeId;                               // Owning node's ID (for log output)
+    private final int targetId;                             // Successor's node ID
+    private final ManagedChannel channel;                   // Channel to successor
+    private final AsyncRingLink fallback;                   // Unary path used while the stream is down
+    private final int capacity;                             // Maximum backlog size
+    private final Deque<RingFrame> unacked = new ArrayDeque<>();  // Written, waiting for an ack
+    private final Deque<RingFrame> backlog = new ArrayDeque<>();  // Not yet written
+    private ClientCallStreamObserver<RingFrame> requestStream;    // Outbound half of the current stream
+    private long nextSeq = 1;                               // Sequence number of the next frame
+    private int stream = 0;                                 // Number of the current stream (callbacks of older ones are ignored)
+    private boolean down = false;                           // True while the stream is broken and not yet re-opened
+    private boolean closed = false;                         // True once close() was called
+    private long reconnectDelay = RECONNECT_MIN_MS;         // Wait before the next re-open attempt
+
+    public StreamingRingLink(int nodeId, int targetId, ManagedChannel channel) {
+        this.nodeId = nodeId;
+        this.targetId = targetId;
+        this.channel = channel;
+        this.capacity = AsyncRingLink.DEFAULT_CAPACITY;
+        this.fallback = new AsyncRingLink(nodeId, targetId, channel);
+        open();
+    }
+
+    /**
+     * Opens a new RingStream call. Caller holds the lock (or is the constructor).
+     */
+    private void open() {
+        int number = ++stream;
+        requestStream = null;  // Set in beforeStart
+        down = false;
+        // Open the stream outside the caller's context (setNext's handler), otherwise
+        // it would be cancelled as soon as setNext returns
+        Context.ROOT.run(() -> NodeServiceGrpc.newStub(channel).ringStream(new AckObserver(number)));
+    }
+
+    @Override
+    public int targetId() {
+        return targetId;
+    }
+
+    @Override
+    public void sendElection(MessageRequest request) {
+        send(RingFrame.Type.ELECTION, request);
+    }
+
+    @Override
+    public void sendLeader(MessageRequest request) {
+        send(RingFrame.Type.LEADER, request);
+    }
+
+    private synchronized void send(RingFrame.Type type, MessageRequest request) {
+        if (closed) return;
+        if (down) {
+            forwardUnary(type, request);
+            return;
+        }
+        if (backlog.size() >= capacity) {
+            System.err.println("Node " + nodeId + ": Ring stream backlog to node " + targetId
+                    + " is full - rejected " + type + "(" + request.getMessage() + ")");
+            return;
+        }
+        backlog.add(RingFrame.newBuilder()
+                .setType(type)
+                .setSeq(nextSeq++)
+                .setPayload(request)
+                .build());
+        flush();
+    }
+
+    /**
+     * Writes backlogged frames while the transport is ready and the window allows.
+     * Caller holds the lock.
+     */
+    private void flush() {
+        if (requestStream == null) return;  // Stream not started yet
+        while (!down && !closed && !backlog.isEmpty() && unacked.size() < MAX_UNACKED && requestStream.isReady()) {
+            RingFrame frame = backlog.poll();
+            unacked.add(frame);
+            requestStream.onNext(frame);
+        }
+    }
+
+    /**
+     * Switches to unary calls while the stream is down, re-sends everything the
+     * successor has not acknowledged, and schedules a re-open.
+     */
+    private synchronized void fallBack(int number, Throwable cause) {
+        if (closed || down || number != stream) return;
+        down = true;
+        requestStream = null;
+        int resent = unacked.size() + backlog.size();
+        if (reconnectDelay == RECONNECT_MIN_MS || resent > 0) {  // Failed re-open attempts are not logged again
+            System.err.println("Node " + nodeId + ": Ring stream to node " + targetId + " closed ("
+                    + (cause == null ? "completed" : cause.getMessage()) + ") - using unary calls, re-sending " + resent
+                    + " frames, re-opening in " + reconnectDelay + " ms");
+        }
+        for (RingFrame frame : unacked) forwardUnary(frame.getType(), frame.getPayload());
+        for (RingFrame frame : backlog) forwardUnary(frame.getType(), frame.getPayload());
+        unacked.clear();
+        backlog.clear();
+        RECONNECT_TIMER.schedule(this::reopen, reconnectDelay, TimeUnit.MILLISECONDS);
+        reconnectDelay = Math.min(reconnectDelay * 2, RECONNECT_MAX_MS);
+    }
+
+    private synchronized void reopen() {
+        if (!closed && down) open();
+    }
+
+    private void forwardUnary(RingFrame.Type type, MessageRequest request) {
+        if (type == RingFrame.Type.LEADER) {
+            fallback.sendLeader(request);
+        } else {
+            fallback.sendElection(request);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;  // Closing on purpose - do not fall back or re-open
+        if (requestStream != null) requestStream.onCompleted();
+        channel.shutdown();
+    }
+
+    /**
+     * Receives acknowledgments and lifecycle events of one stream from the successor.
+     */
+    private class AckObserver implements ClientResponseObserver<RingFrame, RingAck> {
+        private final int number;   // Stream this observer belongs to
+
+        AckObserver(int number) {
+            this.number = number;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<RingFrame> stream) {
+            synchronized (StreamingRingLink.this) {
+                if (number == StreamingRingLink.this.stream) requestStream = stream;
+            }
+            stream.setOnReadyHandler(() -> {
+                synchronized (StreamingRingLink.this) {
+                    if (number == StreamingRingLink.this.stream) flush();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(RingAck ack) {
+            synchronized (StreamingRingLink.this) {
+                if (number != stream) return;
+                reconnectDelay = RECONNECT_MIN_MS;  // The stream works
+                while (!unacked.isEmpty() && unacked.peek().getSeq() <= ack.getAckedSeq()) {
+                    unacked.poll();
+                }
+                flush();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fallBack(number, t);
+        }
+
+        @Override
+        public void onCompleted() {
+            fallBack(number, null);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package CS324_A2;
+
+/**
+ * TopologyPolicy decides where PeerRegister places a joining node in the ring.
+ *
+ * LCR's message count depends on the order of IDs around the ring. With IDs
+ * ascending clockwise every candidate except the largest is dropped by its
+ * direct successor (about 2N ELECTION messages); with IDs descending every
+ * candidate travels until it reaches the largest node (about N^2/2).
+ *
+ * REGISTRATION_ORDER: Append joiners at the end of the ring (original behaviour).
+ * SORTED:             Insert each joiner at its ascending-ID position, so the
+ *                     ring is always in the cheapest order. Still 4 RPCs per join.
+ * RELAYOUT:           Append joiners like REGISTRATION_ORDER (cheapest join), then
+ *                     re-sort the ring in the background once membership has been
+ *                     quiet for a while and no election broadcast is running.
+ *                     Only nodes whose successor changes receive setNext.
+ *
+ * Selected with the system property "lcr.topology" (registration_order | sorted | relayout),
+ * default registration_order.
+ */
+public enum TopologyPolicy {
+    REGISTRATION_ORDER,
+    SORTED,
+    RELAYOUT;
+
+    /**
+     * Reads the topology policy from the "lcr.topology" system property.
+     */
+    public static TopologyPolicy fromSystemProperty() {
+        String value = System.getProperty("lcr.topology", "registration_order");
+        return TopologyPolicy.valueOf(value.trim().toUpperCase());
+    }
+}
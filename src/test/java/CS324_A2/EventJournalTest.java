@@ -0,0 +1,122 @@
+package CS324_A2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * EventJournalTest writes records with EventJournal and reads them back with JournalDecoder.
+ */
+class EventJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsRoundTripThroughDecoder() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        EventJournal journal = new EventJournal(file, 64);
+        int ring = journal.group("ring-1");
+        assertEquals(EventJournal.groupId("ring-1"), ring);
+        assertEquals(ring, journal.group("ring-1"));   // Named only once
+
+        long before = System.currentTimeMillis() * 1_000_000;
+        journal.record(ring, 3, EventJournal.Type.ELECTION, EventJournal.Decision.SENT, 4, 4, 4, 0, 0, 0);
+        journal.record(ring, 3, EventJournal.Type.ELECTION, EventJournal.Decision.FORWARDED, 9, 4, 9, 0, 0, 0);
+        journal.record(ring, 3, EventJournal.Type.PROBE, EventJournal.Decision.REPLIED, -2, 7, 123_456, 5, 32, 1);
+        journal.record(ring, 3, EventJournal.Type.LEADER, EventJournal.Decision.ELECTED, 9, 9, 9, 0, 0, 0);
+        journal.close();
+        long after = System.currentTimeMillis() * 1_000_000;
+
+        assertEquals(5, journal.written());   // Four events and one name record
+        assertEquals(0, journal.dropped());
+
+        JournalDecoder.Journal decoded = JournalDecoder.read(file);
+        assertEquals("ring-1", decoded.groupNames().get(ring));
+        List<JournalDecoder.Event> events = decoded.events();
+        assertEquals(4, events.size());
+
+        JournalDecoder.Event probe = events.get(2);
+        assertEquals(ring, probe.group());
+        assertEquals(3, probe.epoch());
+        assertEquals(-2, probe.node());
+        assertEquals(7, probe.origin());
+        assertEquals(123_456, probe.candidate());
+        assertEquals(32, probe.hop());
+        assertEquals(EventJournal.Type.PROBE, probe.type());
+        assertEquals(EventJournal.Decision.REPLIED, probe.decision());
+        assertEquals(1, probe.direction());
+        assertEquals(5, probe.phase());
+
+        assertEquals(EventJournal.Decision.SENT, events.get(0).decision());
+        assertEquals(EventJournal.Decision.ELECTED, events.get(3).decision());
+        for (JournalDecoder.Event event : events) {
+            // Wall-clock times are rebuilt from the header anchors (ms clock granularity)
+            assertTrue(event.wallNanos() >= before - 1_000_000 && event.wallNanos() <= after + 1_000_000,
+                    "wall time " + event.wallNanos());
+        }
+    }
+
+    @Test
+    void ringsSharingAJournalAreToldApart() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        EventJournal journal = new EventJournal(file, 64);
+        int first = journal.group("ring-1");
+        int second = journal.group("ring-2");
+        // Same node IDs and epoch in both rings
+        journal.record(first, 1, EventJournal.Type.LEADER, EventJournal.Decision.ELECTED, 9, 9, 9, 0, 0, 0);
+        journal.record(second, 1, EventJournal.Type.LEADER, EventJournal.Decision.ELECTED, 9, 9, 9, 0, 0, 0);
+        journal.close();
+
+        JournalDecoder.Journal decoded = JournalDecoder.read(file);
+        TreeMap<JournalDecoder.Election, List<JournalDecoder.Event>> elections =
+                JournalDecoder.byElection(decoded.events());
+        assertEquals(2, elections.size());
+        assertEquals(1, elections.get(new JournalDecoder.Election(first, 1)).size());
+        assertEquals(1, elections.get(new JournalDecoder.Election(second, 1)).size());
+        assertEquals("ring-2", JournalDecoder.groupName(second, decoded.groupNames()));
+    }
+
+    @Test
+    void fullBufferDropsInsteadOfBlocking() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        EventJournal journal = new EventJournal(file, 2);
+        int events = 10_000;
+        for (int i = 0; i < events; i++) {
+            journal.record(0, i, EventJournal.Type.ELECTION, EventJournal.Decision.FORWARDED, 1, 1, 1, 0, 0, 0);
+        }
+        journal.close();
+
+        assertEquals(events, journal.written() + journal.dropped());
+        assertEquals(journal.written(), JournalDecoder.read(file).events().size());
+    }
+
+    @Test
+    void recordingAfterCloseIsIgnored() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        EventJournal journal = new EventJournal(file, 8);
+        journal.record(0, 1, EventJournal.Type.ELECTION, EventJournal.Decision.SENT, 1, 1, 1, 0, 0, 0);
+        journal.close();
+        journal.record(0, 2, EventJournal.Type.ELECTION, EventJournal.Decision.SENT, 1, 1, 1, 0, 0, 0);
+        journal.close();
+
+        assertEquals(1, JournalDecoder.read(file).events().size());
+    }
+
+    @Test
+    void disabledJournalRecordsNothing() {
+        EventJournal journal = new EventJournal(null, 8);
+        assertNull(journal.file());
+        journal.record(0, 1, EventJournal.Type.ELECTION, EventJournal.Decision.SENT, 1, 1, 1, 0, 0, 0);
+        journal.close();
+        assertEquals(0, journal.written());
+    }
+}
@@ -0,0 +1,78 @@
+package CS324_A2;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LatencyHistogramTest checks the bucket bounds and the percentiles read from them.
+ */
+class LatencyHistogramTest {
+
+    /**
+     * Lowest value that falls into a bucket: one more than the highest value of the bucket before it.
+     */
+    private static long lowestValue(int index) {
+        return index == 0 ? 0 : LatencyHistogram.highestValue(index - 1) + 1;
+    }
+
+    @Test
+    void smallValuesHaveTheirOwnBucket() {
+        for (long value = 0; value < 16; value++) {
+            assertEquals(value, LatencyHistogram.index(value));
+            assertEquals(value, LatencyHistogram.highestValue((int) value));
+        }
+    }
+
+    @Test
+    void bucketsAreContiguousAndIncreasing() {
+        int last = LatencyHistogram.index(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(last));
+        for (int i = 0; i <= last; i++) {
+            long lowest = lowestValue(i);
+            long highest = LatencyHistogram.highestValue(i);
+            assertTrue(lowest <= highest, "bucket " + i);
+            assertEquals(i, LatencyHistogram.index(lowest), "lowest value of bucket " + i);
+            assertEquals(i, LatencyHistogram.index(highest), "highest value of bucket " + i);
+        }
+    }
+
+    @Test
+    void bucketWidthIsWithinOneSixteenth() {
+        int last = LatencyHistogram.index(Long.MAX_VALUE);
+        for (int i = 16; i <= last; i++) {
+            long lowest = lowestValue(i);
+            long width = LatencyHistogram.highestValue(i) - lowest + 1;
+            assertTrue(width * 16 <= lowest, "bucket " + i + " is " + width + " wide at " + lowest);
+        }
+    }
+
+    @Test
+    void powersOfTwoStartABucket() {
+        for (int bit = 4; bit < 63; bit++) {
+            long power = 1L << bit;
+            assertEquals(LatencyHistogram.index(power - 1) + 1, LatencyHistogram.index(power), "2^" + bit);
+            assertEquals(power - 1, LatencyHistogram.highestValue(LatencyHistogram.index(power - 1)));
+        }
+    }
+
+    @Test
+    void percentilesReportBucketUpperBoundCappedAtMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileNanos(50));
+
+        for (long value = 1; value <= 100; value++) histogram.record(value * 1_000);
+        histogram.record(-5);   // Counts as 0
+
+        assertEquals(101, histogram.count());
+        assertEquals(5_050_000, histogram.sumNanos());
+        assertEquals(100_000, histogram.maxNanos());
+        assertEquals(0, histogram.percentileNanos(0));
+        assertEquals(100_000, histogram.percentileNanos(100));
+
+        long median = histogram.percentileNanos(50);
+        assertEquals(LatencyHistogram.highestValue(LatencyHistogram.index(50_000)), median);
+        assertTrue(median >= 50_000 && median < 50_000 + 50_000 / 16, "median " + median);
+    }
+}
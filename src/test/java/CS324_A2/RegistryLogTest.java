@@ -0,0 +1,178 @@
+package CS324_A2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RegistryLogTest checks that ring membership written by one RegistryLog is
+ * what the next one recovers, after a clean close, after a crash (no close)
+ * and after a crash between writing a snapshot and starting the next log.
+ */
+class RegistryLogTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Records a few changes in two groups: joins at the front, middle and end, a leave and a re-sort.
+     */
+    private static void recordChanges(RegistryLog log) {
+        log.joined("ring-1", 5, 0);
+        log.joined("ring-1", 9, 1);
+        log.joined("ring-1", 2, 0);   // 2 5 9
+        log.joined("ring-1", 7, 2);   // 2 5 7 9
+        log.left("ring-1", 5);        // 2 7 9
+        log.joined("ring-2", 8, 0);
+        log.joined("ring-2", 3, 1);   // 8 3
+        log.joined("ring-2", 6, 1);   // 8 6 3
+        log.sorted("ring-2");         // 3 6 8
+    }
+
+    private static final Map<String, List<Integer>> EXPECTED =
+            Map.of("ring-1", List.of(2, 7, 9), "ring-2", List.of(3, 6, 8));
+
+    @Test
+    void newDirectoryRecoversNothing() {
+        RegistryLog log = new RegistryLog(directory.resolve("state"));
+        assertEquals(directory.resolve("state"), log.directory());
+        assertTrue(log.recover().isEmpty());
+        log.close();
+    }
+
+    @Test
+    void disabledLogRecordsNothing() {
+        RegistryLog log = RegistryLog.disabled();
+        assertNull(log.directory());
+        recordChanges(log);
+        assertTrue(log.recover().isEmpty());
+        log.close();
+    }
+
+    @Test
+    void recoverMirrorsRecordedChanges() {
+        RegistryLog log = new RegistryLog(directory);
+        recordChanges(log);
+        assertEquals(EXPECTED, log.recover());
+        log.close();
+    }
+
+    @Test
+    void restartAfterCloseRecoversFromSnapshot() {
+        RegistryLog first = new RegistryLog(directory);
+        recordChanges(first);
+        first.close();
+
+        RegistryLog second = new RegistryLog(directory);
+        assertEquals(EXPECTED, second.recover());
+
+        // Changes after the restart go into the new log and survive the next restart too
+        second.joined("ring-1", 4, 1);
+        second.left("ring-2", 6);
+        second.close();
+
+        RegistryLog third = new RegistryLog(directory);
+        assertEquals(Map.of("ring-1", List.of(2, 4, 7, 9), "ring-2", List.of(3, 8)), third.recover());
+        third.close();
+    }
+
+    @Test
+    void restartAfterCrashReplaysLog() {
+        RegistryLog crashed = new RegistryLog(directory);
+        recordChanges(crashed);
+        // No close(): the changes are only in the mapped log, not in a snapshot
+
+        RegistryLog restarted = new RegistryLog(directory);
+        assertEquals(EXPECTED, restarted.recover());
+        restarted.close();
+        crashed.close();
+    }
+
+    @Test
+    void groupThatEmptiedIsNotRecovered() {
+        RegistryLog crashed = new RegistryLog(directory);
+        crashed.joined("ring-1", 1, 0);
+        crashed.joined("ring-2", 2, 0);
+        crashed.left("ring-2", 2);
+
+        RegistryLog restarted = new RegistryLog(directory);
+        assertEquals(Map.of("ring-1", List.of(1)), restarted.recover());
+        restarted.close();
+        crashed.close();
+    }
+
+    @Test
+    void crashBetweenSnapshotAndNewLogDoesNotReplayOldLog() throws IOException {
+        RegistryLog crashed = new RegistryLog(directory);
+        recordChanges(crashed);
+        Path oldLog = onlyLog();
+        Path savedLog = directory.resolve("saved-log.copy");
+        Files.copy(oldLog, savedLog);
+
+        // The restart writes a snapshot of the next generation holding the replayed changes...
+        RegistryLog restarted = new RegistryLog(directory);
+        assertEquals(EXPECTED, restarted.recover());
+        Path newLog = onlyLog();
+        assertFalse(newLog.equals(oldLog));
+
+        // ...and "crashes" before its new log exists: the older log is still on disk
+        Files.delete(newLog);
+        Files.copy(savedLog, oldLog, StandardCopyOption.REPLACE_EXISTING);
+
+        RegistryLog afterCrash = new RegistryLog(directory);
+        assertEquals(EXPECTED, afterCrash.recover());
+        afterCrash.close();
+        restarted.close();
+        crashed.close();
+    }
+
+    @Test
+    void crashBeforeNewLogHeaderIgnoresEmptyLog() throws IOException {
+        RegistryLog crashed = new RegistryLog(directory);
+        recordChanges(crashed);
+
+        RegistryLog restarted = new RegistryLog(directory);
+        // The new log was created but its header never reached the file
+        // (replaced rather than truncated: the restarted log still maps it)
+        Path newLog = onlyLog();
+        Files.delete(newLog);
+        Files.createFile(newLog);
+
+        RegistryLog afterCrash = new RegistryLog(directory);
+        assertEquals(EXPECTED, afterCrash.recover());
+        afterCrash.close();
+        restarted.close();
+        crashed.close();
+    }
+
+    @Test
+    void unreadableSnapshotDisablesLog() throws IOException {
+        Files.write(directory.resolve("registry.snapshot"), new byte[]{1, 2, 3});
+        RegistryLog log = new RegistryLog(directory);
+        assertNull(log.directory());
+        recordChanges(log);
+        assertTrue(log.recover().isEmpty());
+    }
+
+    /**
+     * @return The one log file in the state directory
+     */
+    private Path onlyLog() throws IOException {
+        try (var logs = Files.list(directory)) {
+            List<Path> found = logs.filter(p -> p.getFileName().toString().endsWith(".log")).toList();
+            assertEquals(1, found.size(), "log files: " + found);
+            return found.get(0);
+        }
+    }
+}